@@ -0,0 +1,71 @@
+package com.mercury1089.benchmark;
+
+import com.mercury1089.main.Blobs;
+import com.mercury1089.main.FilterContourSettings;
+import com.mercury1089.main.MercPipeline;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks processing a frame with blobs split into more and more bands, to show how much the latency of
+ * a single frame drops by using more cores. Gear frames of the corpus are scaled up for the larger size.
+ * The speedup is bounded by the number of cores of the machine it runs on, so run it on the Pi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BandBenchmark {
+    // Same as the default threshold used by Main
+    private static final double[] THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Param({"320x240", "640x480"})
+    public String size;
+
+    @Param({"1", "2", "4"})
+    public int bands;
+
+    private Mat[] frames;
+    private MercPipeline pipeline;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] dimensions = size.split("x");
+        Size frameSize = new Size(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+
+        frames = FrameCorpus.load("gear");
+
+        for (Mat frame : frames) {
+            if (frame.width() != frameSize.width || frame.height() != frameSize.height)
+                Imgproc.resize(frame, frame, frameSize);
+        }
+
+        pipeline = new MercPipeline(THRESHOLD, new FilterContourSettings());
+        pipeline.setBlobExtraction(true);
+        pipeline.setBands(bands);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FrameCorpus.release(frames);
+    }
+
+    @Benchmark
+    public Blobs processBlobs() {
+        pipeline.process(frames[index]);
+        index = (index + 1) % frames.length;
+        return pipeline.blobsOutput();
+    }
+}
@@ -0,0 +1,88 @@
+package com.mercury1089.benchmark;
+
+import com.mercury1089.main.FilterContourSettings;
+import com.mercury1089.main.MercPipeline;
+import com.mercury1089.vision.SharedFrame;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks running several pipelines on the same frame, each converting it on its own,
+ * against sharing the frame so that it is only converted once. Both run the pipelines one after the other,
+ * so the difference is the total work saved, not the time saved by running them at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+    // Same as the default threshold used by Main
+    private static final double[] THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Param({"2", "3"})
+    public int pipelines;
+
+    private Mat[] frames;
+    private SharedFrame[] shared;
+    private MercPipeline[] independent, sharing;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        frames = FrameCorpus.load("gear");
+        shared = new SharedFrame[frames.length];
+        for (int i = 0; i < frames.length; i++)
+            shared[i] = new SharedFrame(frames[i]);
+
+        independent = new MercPipeline[pipelines];
+        sharing = new MercPipeline[pipelines];
+        for (int i = 0; i < pipelines; i++) {
+            independent[i] = new MercPipeline(THRESHOLD, new FilterContourSettings());
+            sharing[i] = new MercPipeline(THRESHOLD, new FilterContourSettings());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (SharedFrame frame : shared)
+            frame.release();
+        FrameCorpus.release(frames);
+    }
+
+    @Benchmark
+    public List<MatOfPoint> independent() {
+        Mat frame = frames[index];
+        index = (index + 1) % frames.length;
+
+        for (MercPipeline pipeline : independent)
+            pipeline.process(frame);
+
+        return independent[pipelines - 1].filterContoursOutput();
+    }
+
+    /**
+     * Forgets the conversion every time, as a newly grabbed frame would.
+     */
+    @Benchmark
+    public List<MatOfPoint> shared() {
+        SharedFrame frame = shared[index];
+        index = (index + 1) % frames.length;
+        frame.reset();
+
+        for (MercPipeline pipeline : sharing)
+            pipeline.process(frame);
+
+        return sharing[pipelines - 1].filterContoursOutput();
+    }
+}
@@ -0,0 +1,53 @@
+package com.mercury1089.benchmark;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Loads the recorded frames used by the benchmarks.
+ * The directory is taken from the "vision.frames" system property, which the build sets to src/jmh/frames.
+ * OpenCV must already be loaded by the benchmark using it.
+ */
+public final class FrameCorpus {
+    public static final String FRAMES_PROPERTY = "vision.frames";
+
+    private FrameCorpus() { }
+
+    /**
+     * Loads every PNG in the corpus whose name starts with the specified prefix.
+     *
+     * @param prefix the prefix of the frames to load, e.g. "gear" or "highgoal"
+     * @return the frames, in BGR, sorted by file name
+     */
+    public static Mat[] load(String prefix) {
+        File dir = new File(System.getProperty(FRAMES_PROPERTY, "src/jmh/frames"));
+        File[] files = dir.listFiles((File d, String name) -> name.startsWith(prefix) && name.endsWith(".png"));
+
+        if (files == null || files.length == 0)
+            throw new IllegalStateException("No frames starting with \"" + prefix + "\" in " + dir.getAbsolutePath());
+
+        Arrays.sort(files);
+
+        Mat[] frames = new Mat[files.length];
+        for (int i = 0; i < files.length; i++) {
+            frames[i] = Imgcodecs.imread(files[i].getPath(), Imgcodecs.IMREAD_COLOR);
+            if (frames[i].empty())
+                throw new IllegalStateException("Could not read " + files[i].getPath());
+        }
+
+        return frames;
+    }
+
+    /**
+     * Frees the native memory of a set of frames.
+     *
+     * @param frames the frames to release
+     */
+    public static void release(Mat[] frames) {
+        for (Mat frame : frames)
+            frame.release();
+    }
+}
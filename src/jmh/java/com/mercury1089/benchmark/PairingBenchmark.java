@@ -0,0 +1,70 @@
+package com.mercury1089.benchmark;
+
+import com.mercury1089.main.Blobs;
+import com.mercury1089.main.PairingSettings;
+import com.mercury1089.main.TargetFinder;
+import com.mercury1089.main.TargetResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks pairing up a gear target among more and more clutter, to show how the cost of scored pairing grows
+ * with the number of candidates. The clutter is rects of random sizes scattered over a 320x240 frame,
+ * as reflections and lights would be, with the real target somewhere among them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PairingBenchmark {
+    @Param({"2", "16", "128", "1024"})
+    public int candidates;
+
+    private final Blobs blobs = new Blobs();
+    private final TargetResult result = new TargetResult();
+    private TargetFinder scored, largest;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        PairingSettings settings = new PairingSettings();
+        scored = new TargetFinder(settings);
+        largest = new TargetFinder();
+
+        Random random = new Random(1089);
+        blobs.x = new int[candidates];
+        blobs.y = new int[candidates];
+        blobs.width = new int[candidates];
+        blobs.height = new int[candidates];
+        blobs.count = candidates;
+
+        // The target, as in gear_00
+        set(0, 120, 90, 14, 36);
+        set(1, 172, 92, 14, 36);
+
+        for (int i = 2; i < candidates; i++)
+            set(i, random.nextInt(300), random.nextInt(220), 2 + random.nextInt(40), 2 + random.nextInt(40));
+    }
+
+    private void set(int i, int x, int y, int width, int height) {
+        blobs.x[i] = x;
+        blobs.y[i] = y;
+        blobs.width[i] = width;
+        blobs.height[i] = height;
+    }
+
+    @Benchmark
+    public TargetResult scored() {
+        scored.find(blobs, result);
+        return result;
+    }
+
+    @Benchmark
+    public TargetResult largest() {
+        largest.find(blobs, result);
+        return result;
+    }
+}
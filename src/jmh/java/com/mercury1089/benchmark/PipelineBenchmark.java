@@ -0,0 +1,312 @@
+package com.mercury1089.benchmark;
+
+import com.mercury1089.main.BlobExtractor;
+import com.mercury1089.main.Blobs;
+import com.mercury1089.main.ContourFilter;
+import com.mercury1089.main.FilterContourSettings;
+import com.mercury1089.main.JavaThresholdEngine;
+import com.mercury1089.main.LookupThresholdEngine;
+import com.mercury1089.main.MercPipeline;
+import com.mercury1089.main.RoiTracker;
+import com.mercury1089.main.TargetFinder;
+import com.mercury1089.main.TargetResult;
+import com.mercury1089.main.TrackingSettings;
+import com.mercury1089.vision.MotionGate;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each stage of {@link MercPipeline} and the target finding done by the vision threads,
+ * as well as the entire per-frame path. Every invocation handles exactly one frame of the corpus,
+ * so the average time is the time per frame. Run with the gc profiler to get bytes allocated per frame.
+ * Buffers are reused across invocations the same way the vision threads reuse them, so the allocation
+ * numbers are those of a thread that has been running for a while.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+    // Same as the default threshold used by Main
+    private static final double[] THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Param({"gear", "highgoal"})
+    public String target;
+
+    private Mat[] frames, hls, masks, scratch;
+    private List<List<MatOfPoint>> contours, filtered;
+    private TargetResult[] results;
+    private Blobs[] blobs;
+    private int index;
+
+    private final Scalar
+        lower = new Scalar(THRESHOLD[0], THRESHOLD[4], THRESHOLD[2]),
+        upper = new Scalar(THRESHOLD[1], THRESHOLD[5], THRESHOLD[3]);
+
+    private final Mat
+        hlsOut = new Mat(),
+        maskOut = new Mat(),
+        hierarchy = new Mat();
+
+    private final ArrayList<MatOfPoint>
+        contoursOut = new ArrayList<>(),
+        filteredOut = new ArrayList<>();
+
+    private FilterContourSettings fcs;
+    private final ContourFilter contourFilter = new ContourFilter();
+    private final BlobExtractor blobExtractor = new BlobExtractor();
+    private final Blobs blobsOut = new Blobs();
+    private final Point origin = new Point();
+    private MercPipeline pipeline, trackingPipeline, blobPipeline, pyramid2Pipeline, pyramid4Pipeline;
+    private RoiTracker tracker;
+    private TargetFinder finder;
+    private final TargetResult result = new TargetResult();
+    private final LookupThresholdEngine lookup = new LookupThresholdEngine();
+    private final JavaThresholdEngine java = new JavaThresholdEngine();
+    // Never refreshes, so only a change can make it process
+    private final MotionGate gate = new MotionGate(8, 10, 0.005, Long.MAX_VALUE / 1000);
+    private long gateTime = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fcs = new FilterContourSettings();
+        pipeline = new MercPipeline(THRESHOLD, fcs);
+        trackingPipeline = new MercPipeline(THRESHOLD, fcs);
+        blobPipeline = new MercPipeline(THRESHOLD, fcs);
+        blobPipeline.setBlobExtraction(true);
+        pyramid2Pipeline = new MercPipeline(THRESHOLD, fcs);
+        pyramid2Pipeline.setPyramidFactor(2);
+        pyramid4Pipeline = new MercPipeline(THRESHOLD, fcs);
+        pyramid4Pipeline.setPyramidFactor(4);
+        TrackingSettings tracking = new TrackingSettings();
+        tracking.enabled = true;
+        tracker = new RoiTracker(tracking);
+        finder = new TargetFinder();
+        frames = FrameCorpus.load(target);
+        lookup.setBounds(
+                new double[] {THRESHOLD[0], THRESHOLD[1]},
+                new double[] {THRESHOLD[2], THRESHOLD[3]},
+                new double[] {THRESHOLD[4], THRESHOLD[5]}
+        );
+        java.setBounds(
+                new double[] {THRESHOLD[0], THRESHOLD[1]},
+                new double[] {THRESHOLD[2], THRESHOLD[3]},
+                new double[] {THRESHOLD[4], THRESHOLD[5]}
+        );
+
+        // Precompute the input of every stage so that each one can be measured on its own
+        hls = new Mat[frames.length];
+        masks = new Mat[frames.length];
+        scratch = new Mat[frames.length];
+        contours = new ArrayList<>();
+        filtered = new ArrayList<>();
+        results = new TargetResult[frames.length];
+        blobs = new Blobs[frames.length];
+
+        for (int i = 0; i < frames.length; i++) {
+            hls[i] = new Mat();
+            Imgproc.cvtColor(frames[i], hls[i], Imgproc.COLOR_BGR2HLS);
+
+            masks[i] = new Mat();
+            Core.inRange(hls[i], lower, upper, masks[i]);
+
+            scratch[i] = frames[i].clone();
+
+            // Before the contours, since findContours may modify the mask
+            blobs[i] = new Blobs();
+            blobExtractor.extract(masks[i], origin, fcs, blobs[i]);
+
+            // The pipeline releases its contours on the next frame, so keep a copy of our own
+            List<MatOfPoint> found = new ArrayList<>();
+            Imgproc.findContours(masks[i], found, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+            contours.add(found);
+
+            List<MatOfPoint> kept = new ArrayList<>();
+            contourFilter.filter(found, fcs, kept);
+            filtered.add(kept);
+
+            results[i] = new TargetResult();
+            finder.find(filtered.get(i), results[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FrameCorpus.release(frames);
+        FrameCorpus.release(hls);
+        FrameCorpus.release(masks);
+        FrameCorpus.release(scratch);
+    }
+
+    /**
+     * Moves on to the next frame of the corpus.
+     */
+    private int nextFrame() {
+        int i = index;
+        index = (index + 1) % frames.length;
+        return i;
+    }
+
+    @Benchmark
+    public boolean motionGateChanged() {
+        // Every frame of the corpus is different from the one before
+        return gate.shouldProcess(frames[nextFrame()], ++gateTime);
+    }
+
+    @Benchmark
+    public boolean motionGateUnchanged() {
+        // The frame is always the same, so every block is compared
+        return gate.shouldProcess(frames[0], ++gateTime);
+    }
+
+    @Benchmark
+    public Mat cvtColor() {
+        Imgproc.cvtColor(frames[nextFrame()], hlsOut, Imgproc.COLOR_BGR2HLS);
+        return hlsOut;
+    }
+
+    @Benchmark
+    public Mat inRange() {
+        Core.inRange(hls[nextFrame()], lower, upper, maskOut);
+        return maskOut;
+    }
+
+    /**
+     * Both threshold steps of the pipeline together, to compare against {@link #lookupThreshold()} and {@link #javaThreshold()}.
+     */
+    @Benchmark
+    public Mat hslThreshold() {
+        Imgproc.cvtColor(frames[nextFrame()], hlsOut, Imgproc.COLOR_BGR2HLS);
+        Core.inRange(hlsOut, lower, upper, maskOut);
+        return maskOut;
+    }
+
+    @Benchmark
+    public Mat lookupThreshold() {
+        lookup.threshold(frames[nextFrame()], maskOut);
+        return maskOut;
+    }
+
+    @Benchmark
+    public Mat javaThreshold() {
+        java.threshold(frames[nextFrame()], maskOut);
+        return maskOut;
+    }
+
+    @Benchmark
+    public List<MatOfPoint> findContours() {
+        contoursOut.clear();
+        Imgproc.findContours(masks[nextFrame()], contoursOut, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+        return contoursOut;
+    }
+
+    /**
+     * The old filter the pipeline used, which only checks the area, to compare against {@link #contourFilter()}.
+     */
+    @Benchmark
+    public List<MatOfPoint> filterContours() {
+        filteredOut.clear();
+        for (MatOfPoint contour : contours.get(nextFrame()))
+            if (Imgproc.contourArea(contour) >= fcs.minArea)
+                filteredOut.add(contour);
+        return filteredOut;
+    }
+
+    @Benchmark
+    public List<MatOfPoint> contourFilter() {
+        contourFilter.filter(contours.get(nextFrame()), fcs, filteredOut);
+        return filteredOut;
+    }
+
+    /**
+     * Blob extraction, which takes the place of both {@link #findContours()} and {@link #contourFilter()}.
+     */
+    @Benchmark
+    public Blobs extractBlobs() {
+        blobExtractor.extract(masks[nextFrame()], origin, fcs, blobsOut);
+        return blobsOut;
+    }
+
+    @Benchmark
+    public List<MatOfPoint> process() {
+        pipeline.process(frames[nextFrame()]);
+        return pipeline.filterContoursOutput();
+    }
+
+    /**
+     * Processes each frame with the search window that would be used
+     * if the target had been found in the same place in the last frame.
+     */
+    @Benchmark
+    public List<MatOfPoint> processTracking() {
+        int i = nextFrame();
+        tracker.update(trackingPipeline, results[i], frames[i].cols(), frames[i].rows());
+        trackingPipeline.process(frames[i]);
+        return trackingPipeline.filterContoursOutput();
+    }
+
+    /**
+     * Processes each frame by searching a copy half as big first.
+     */
+    @Benchmark
+    public List<MatOfPoint> processPyramid2() {
+        pyramid2Pipeline.process(frames[nextFrame()]);
+        return pyramid2Pipeline.filterContoursOutput();
+    }
+
+    /**
+     * Processes each frame by searching a copy a quarter as big first.
+     */
+    @Benchmark
+    public List<MatOfPoint> processPyramid4() {
+        pyramid4Pipeline.process(frames[nextFrame()]);
+        return pyramid4Pipeline.filterContoursOutput();
+    }
+
+    @Benchmark
+    public Blobs processBlobs() {
+        blobPipeline.process(frames[nextFrame()]);
+        return blobPipeline.blobsOutput();
+    }
+
+    @Benchmark
+    public TargetResult findTarget() {
+        finder.find(filtered.get(nextFrame()), result);
+        return result;
+    }
+
+    @Benchmark
+    public TargetResult findTargetBlobs() {
+        finder.find(blobs[nextFrame()], result);
+        return result;
+    }
+
+    @Benchmark
+    public Mat draw() {
+        int i = nextFrame();
+        finder.draw(scratch[i], results[i]);
+        return scratch[i];
+    }
+
+    @Benchmark
+    public TargetResult frame() {
+        int i = nextFrame();
+
+        pipeline.process(frames[i]);
+        finder.find(pipeline.filterContoursOutput(), result);
+        finder.draw(scratch[i], result);
+
+        return result;
+    }
+}
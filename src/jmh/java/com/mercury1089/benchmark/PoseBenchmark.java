@@ -0,0 +1,145 @@
+package com.mercury1089.benchmark;
+
+import com.mercury1089.main.PoseEstimator;
+import com.mercury1089.main.PoseSettings;
+import com.mercury1089.main.TargetResult;
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks solving for the pose of a target, starting every solve from scratch against starting from the last
+ * frame's pose. The frames are the target projected through the default Pi camera intrinsics while driving in
+ * from 150" to 30", turning to face it and squaring up to it, with each piece's box rounded to whole pixels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoseBenchmark {
+    private static final int FRAMES = 120;
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Param({"gearVision", "highGoal"})
+    public String target;
+
+    private TargetResult[] results;
+    private final TargetResult lost = new TargetResult();
+    private PoseEstimator cold, warm;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        PoseSettings settings = PoseSettings.forTarget(target, "Pi", 320, 240);
+        warm = new PoseEstimator(settings);
+
+        PoseSettings coldSettings = PoseSettings.forTarget(target, "Pi", 320, 240);
+        coldSettings.warmStart = false;
+        cold = new PoseEstimator(coldSettings);
+
+        Mat cameraMatrix = new Mat(3, 3, CvType.CV_64F);
+        double[] k = settings.cameraMatrix;
+        cameraMatrix.put(0, 0, k[0], 0, k[2], 0, k[1], k[3], 0, 0, 1);
+
+        results = new TargetResult[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            double
+                distance = 150 - i,
+                yaw = Math.toRadians(20 - i / 4.0),
+                skew = Math.toRadians(30 * (1 - i / (double)FRAMES));
+
+            Mat rotation = new Mat(3, 3, CvType.CV_64F);
+            rotation.put(0, 0,
+                Math.cos(skew), 0, -Math.sin(skew),
+                0, 1, 0,
+                Math.sin(skew), 0, Math.cos(skew));
+            Mat rvec = new Mat(), tvec = new Mat(3, 1, CvType.CV_64F);
+            Calib3d.Rodrigues(rotation, rvec);
+            tvec.put(0, 0, distance * Math.sin(yaw), 6, distance * Math.cos(yaw));
+
+            TargetResult result = new TargetResult();
+            result.seeTarget = true;
+            project(settings, -1, settings.width1, settings.height1, rvec, tvec, cameraMatrix, result.centerTarget1, result.boundsTarget1);
+            project(settings, 1, settings.width2, settings.height2, rvec, tvec, cameraMatrix, result.centerTarget2, result.boundsTarget2);
+            results[i] = result;
+
+            rotation.release();
+            rvec.release();
+            tvec.release();
+        }
+
+        cameraMatrix.release();
+    }
+
+    /**
+     * Fills in the box a piece of the target would be found in, to the nearest pixel.
+     */
+    private static void project(PoseSettings settings, int side, double width, double height, Mat rvec, Mat tvec, Mat cameraMatrix, double[] center, double[] bounds) {
+        double
+            x = side * settings.offsetX / 2,
+            y = side * settings.offsetY / 2;
+
+        MatOfPoint3f object = new MatOfPoint3f(
+            new Point3(x - width / 2, y - height / 2, 0),
+            new Point3(x + width / 2, y - height / 2, 0),
+            new Point3(x + width / 2, y + height / 2, 0),
+            new Point3(x - width / 2, y + height / 2, 0));
+        MatOfPoint2f image = new MatOfPoint2f();
+        MatOfDouble distortion = new MatOfDouble(0, 0, 0, 0, 0);
+        Calib3d.projectPoints(object, rvec, tvec, cameraMatrix, distortion, image);
+
+        double left = Double.MAX_VALUE, top = Double.MAX_VALUE, right = -Double.MAX_VALUE, bottom = -Double.MAX_VALUE;
+        for (Point point : image.toArray()) {
+            left = Math.min(left, point.x);
+            top = Math.min(top, point.y);
+            right = Math.max(right, point.x);
+            bottom = Math.max(bottom, point.y);
+        }
+
+        bounds[0] = Math.round(right) - Math.round(left);
+        bounds[1] = Math.round(bottom) - Math.round(top);
+        center[0] = Math.round(left) + bounds[0] / 2;
+        center[1] = Math.round(top) + bounds[1] / 2;
+
+        object.release();
+        image.release();
+        distortion.release();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cold.release();
+        warm.release();
+    }
+
+    @Benchmark
+    public double[] cold() {
+        TargetResult result = results[index];
+        index = (index + 1) % FRAMES;
+
+        cold.solve(result);
+        return result.pose;
+    }
+
+    /**
+     * Starts over from scratch at the start of each approach, the same as when the target is first found.
+     */
+    @Benchmark
+    public double[] warm() {
+        if (index == 0)
+            warm.solve(lost);
+
+        TargetResult result = results[index];
+        index = (index + 1) % FRAMES;
+
+        warm.solve(result);
+        return result.pose;
+    }
+}
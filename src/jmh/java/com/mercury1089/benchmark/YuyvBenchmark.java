@@ -0,0 +1,125 @@
+package com.mercury1089.benchmark;
+
+import com.mercury1089.main.YuyvThresholdEngine;
+import com.mercury1089.vision.Yuyv;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks getting from what the camera sends to a thresholded mask. MJPEG has to be decoded and YUYV converted
+ * to BGR before either can be converted to HLS and thresholded, while {@link YuyvThresholdEngine} thresholds YUYV
+ * as it is. Thresholding BGR that is already decoded is included to show how much of each is the decoding.
+ * The YUYV frames are made from the corpus with {@link Yuyv#fromBgr(Mat, Mat)}, and the JPEGs are encoded from it
+ * at OpenCV's default quality.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class YuyvBenchmark {
+    // Same as the default threshold used by Main
+    private static final double[] THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Param({"gear", "highgoal"})
+    public String target;
+
+    private Mat[] frames, yuyv;
+    private MatOfByte[] jpegs;
+    private int index;
+
+    private final Scalar
+        lower = new Scalar(THRESHOLD[0], THRESHOLD[4], THRESHOLD[2]),
+        upper = new Scalar(THRESHOLD[1], THRESHOLD[5], THRESHOLD[3]);
+
+    private final Mat
+        decoded = new Mat(),
+        hls = new Mat(),
+        mask = new Mat();
+
+    private final YuyvThresholdEngine engine = new YuyvThresholdEngine();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        frames = FrameCorpus.load(target);
+        yuyv = new Mat[frames.length];
+        jpegs = new MatOfByte[frames.length];
+
+        for (int i = 0; i < frames.length; i++) {
+            yuyv[i] = new Mat();
+            Yuyv.fromBgr(frames[i], yuyv[i]);
+            jpegs[i] = new MatOfByte();
+            Imgcodecs.imencode(".jpg", frames[i], jpegs[i]);
+        }
+
+        engine.setBounds(
+            new double[]{THRESHOLD[0], THRESHOLD[1]},
+            new double[]{THRESHOLD[2], THRESHOLD[3]},
+            new double[]{THRESHOLD[4], THRESHOLD[5]});
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FrameCorpus.release(frames);
+        FrameCorpus.release(yuyv);
+        for (MatOfByte jpeg : jpegs)
+            jpeg.release();
+        decoded.release();
+        hls.release();
+        mask.release();
+    }
+
+    private int next() {
+        int i = index;
+        index = (index + 1) % frames.length;
+        return i;
+    }
+
+    /**
+     * What the pipeline costs with MJPEG from the camera, which a {@link edu.wpi.cscore.CvSink} decodes.
+     */
+    @Benchmark
+    public Mat jpeg() {
+        Mat frame = Imgcodecs.imdecode(jpegs[next()], Imgcodecs.IMREAD_COLOR);
+        Imgproc.cvtColor(frame, hls, Imgproc.COLOR_BGR2HLS);
+        Core.inRange(hls, lower, upper, mask);
+        frame.release();
+        return mask;
+    }
+
+    /**
+     * What the pipeline costs with YUYV from the camera, which a {@link edu.wpi.cscore.CvSink} converts to BGR.
+     */
+    @Benchmark
+    public Mat yuyvToBgr() {
+        Yuyv.toBgr(yuyv[next()], decoded);
+        Imgproc.cvtColor(decoded, hls, Imgproc.COLOR_BGR2HLS);
+        Core.inRange(hls, lower, upper, mask);
+        return mask;
+    }
+
+    /**
+     * Thresholding alone, once the frame is in BGR.
+     */
+    @Benchmark
+    public Mat bgr() {
+        Imgproc.cvtColor(frames[next()], hls, Imgproc.COLOR_BGR2HLS);
+        Core.inRange(hls, lower, upper, mask);
+        return mask;
+    }
+
+    @Benchmark
+    public Mat yuyvLookup() {
+        engine.threshold(yuyv[next()], mask);
+        return mask;
+    }
+}
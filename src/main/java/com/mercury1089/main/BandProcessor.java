@@ -0,0 +1,322 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.MatPool;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class splits a frame into horizontal bands and thresholds and labels each one at the same time
+ * on the common fork/join pool, so one frame can use every core instead of just the one its camera's thread is on.
+ * The thread calling it works on a band too, rather than waiting.
+ *
+ * <p>Bands do not overlap. A blob that crosses the edge between two bands is found as a piece in each,
+ * and the pieces are joined wherever a pixel on one side of the edge touches one on the other, including diagonally,
+ * the same as labeling the whole mask at once would. The stats of the pieces add up exactly, so the blobs
+ * are the same as {@link BlobExtractor} finds, in the same order.
+ */
+public class BandProcessor {
+    // Bands thinner than this cost more to hand out than they save
+    private static final int MIN_BAND_ROWS = 16;
+
+    /**
+     * One band of a frame, thresholded and labeled as a task of its own.
+     */
+    private static class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final BlobExtractor EXTRACTOR = new BlobExtractor();
+        final Scalar
+            LOWER = new Scalar(0, 0, 0),
+            UPPER = new Scalar(0, 0, 0);
+
+        // Set before every frame
+        Mat input, mask;
+        ThresholdEngine engine;
+        PipelineSettings settings;
+        boolean label;
+        int top, bottom;
+
+        // Number of labels found, including the background
+        int count;
+
+        // Views of the band, kept while the frame's buffers and size stay the same
+        private final WindowView
+            inputView = new WindowView(),
+            maskView = new WindowView();
+        private final Rect rect = new Rect();
+
+        @Override
+        protected void compute() {
+            rect.x = 0;
+            rect.y = top;
+            rect.width = mask.cols();
+            rect.height = bottom - top;
+
+            Mat bandMask = maskView.of(mask, rect);
+
+            if (input != null)
+                threshold(inputView.of(input, rect), bandMask);
+
+            count = label ? EXTRACTOR.label(bandMask) : 0;
+        }
+
+        private void threshold(Mat input, Mat out) {
+            if (engine != null) {
+                engine.threshold(input, out);
+                return;
+            }
+
+            double[]
+                hue = settings.hue(),
+                sat = settings.sat(),
+                lum = settings.lum();
+
+            LOWER.val[0] = hue[0];
+            LOWER.val[1] = lum[0];
+            LOWER.val[2] = sat[0];
+            UPPER.val[0] = hue[1];
+            UPPER.val[1] = lum[1];
+            UPPER.val[2] = sat[1];
+
+            Mat converted = MatPool.SHARED.borrow(input.rows(), input.cols(), CvType.CV_8UC3);
+            Imgproc.cvtColor(input, converted, Imgproc.COLOR_BGR2HLS);
+            Core.inRange(converted, LOWER, UPPER, out);
+            MatPool.SHARED.giveBack(converted);
+        }
+    }
+
+    private final Band[] BANDS;
+    // Bands used for the last frame
+    private int used = 0, cols = 0;
+
+    // Every label of every band, numbered from the first of the top band, joined across the edges
+    private int[]
+        base = new int[0],
+        parent = new int[64],
+        minX = new int[64],
+        minY = new int[64],
+        maxX = new int[64],
+        maxY = new int[64],
+        area = new int[64];
+    private long[]
+        first = new long[64],
+        sumX = new long[64],
+        sumY = new long[64],
+        order = new long[16];
+
+    /**
+     * @param bands the most bands to split a frame into, which should be the number of cores
+     * @throws IllegalArgumentException if there are fewer than 1
+     */
+    public BandProcessor(int bands) {
+        if (bands < 1)
+            throw new IllegalArgumentException("bands must be at least 1, got " + bands);
+
+        BANDS = new Band[bands];
+        for (int i = 0; i < bands; i++)
+            BANDS[i] = new Band();
+        base = new int[bands];
+    }
+
+    /**
+     * @param rows the number of rows of a frame
+     * @return how many bands a frame with that many rows would be split into
+     */
+    public int bandsFor(int rows) {
+        return Math.max(1, Math.min(BANDS.length, rows / MIN_BAND_ROWS));
+    }
+
+    /**
+     * Thresholds and labels every band of a frame at once, returning once all of them are done.
+     *
+     * @param input    the BGR frame to threshold, or null if the mask is already thresholded
+     * @param mask     the mask to threshold into, the same size as the frame
+     * @param engine   the engine to threshold with, or null to use OpenCV's cvtColor and inRange
+     * @param settings the settings of this frame
+     * @param label    whether to label the blobs of each band, so they can be {@link #merge merged}
+     */
+    public void process(Mat input, Mat mask, ThresholdEngine engine, PipelineSettings settings, boolean label) {
+        int rows = mask.rows();
+        used = bandsFor(rows);
+        cols = mask.cols();
+
+        for (int i = 0; i < used; i++) {
+            Band band = BANDS[i];
+            band.reinitialize();
+            band.input = input;
+            band.mask = mask;
+            band.engine = engine;
+            band.settings = settings;
+            band.label = label;
+            band.top = rows * i / used;
+            band.bottom = rows * (i + 1) / used;
+        }
+
+        for (int i = used - 1; i > 0; i--)
+            BANDS[i].fork();
+
+        BANDS[0].invoke();
+
+        for (int i = 1; i < used; i++)
+            BANDS[i].join();
+    }
+
+    /**
+     * Joins the pieces of blobs labeled in each band of the last frame, and finds the ones that meet the settings.
+     *
+     * @param offset   where the mask is in the full frame, added to every position
+     * @param settings the criteria each blob has to meet
+     * @param output   the blobs to store the ones that met the criteria in. It is cleared first.
+     */
+    public void merge(Point offset, FilterContourSettings settings, Blobs output) {
+        output.count = 0;
+
+        int total = 0;
+        for (int i = 0; i < used; i++) {
+            base[i] = total;
+            total += BANDS[i].count;
+        }
+
+        ensureCapacity(total);
+
+        for (int i = 0; i < total; i++)
+            parent[i] = i;
+
+        // Join labels that touch across each edge, looking at the row on either side of it
+        for (int i = 0; i + 1 < used; i++) {
+            Band above = BANDS[i], below = BANDS[i + 1];
+            int[]
+                upper = above.EXTRACTOR.labelValues,
+                lower = below.EXTRACTOR.labelValues;
+            int lastRow = (above.bottom - above.top - 1) * cols;
+
+            for (int x = 0; x < cols; x++) {
+                int label = upper[lastRow + x];
+                if (label == 0)
+                    continue;
+
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(cols - 1, x + 1); nx++) {
+                    if (lower[nx] != 0)
+                        union(base[i] + label, base[i + 1] + lower[nx]);
+                }
+            }
+        }
+
+        // A root is always the lowest label of its blob, so it is reached before any label joined to it
+        for (int i = 0; i < used; i++) {
+            Band band = BANDS[i];
+            BlobExtractor extractor = band.EXTRACTOR;
+
+            for (int label = 1; label < band.count; label++) {
+                int
+                    global = base[i] + label,
+                    root = find(global),
+                    top = extractor.minY[label] + band.top;
+                long firstPixel = (long)top * cols + extractor.firstX[label];
+
+                if (root == global) {
+                    minX[root] = extractor.minX[label];
+                    minY[root] = top;
+                    maxX[root] = extractor.maxX[label];
+                    maxY[root] = extractor.maxY[label] + band.top;
+                    area[root] = extractor.area[label];
+                    first[root] = firstPixel;
+                    sumX[root] = extractor.sumX[label];
+                    sumY[root] = extractor.sumY[label] + (long)band.top * extractor.area[label];
+                } else {
+                    minX[root] = Math.min(minX[root], extractor.minX[label]);
+                    minY[root] = Math.min(minY[root], top);
+                    maxX[root] = Math.max(maxX[root], extractor.maxX[label]);
+                    maxY[root] = Math.max(maxY[root], extractor.maxY[label] + band.top);
+                    area[root] += extractor.area[label];
+                    first[root] = Math.min(first[root], firstPixel);
+                    sumX[root] += extractor.sumX[label];
+                    sumY[root] += extractor.sumY[label] + (long)band.top * extractor.area[label];
+                }
+            }
+        }
+
+        int count = 0;
+
+        for (int i = 0; i < used; i++) {
+            for (int label = 1; label < BANDS[i].count; label++) {
+                int global = base[i] + label;
+
+                if (parent[global] != global)
+                    continue;
+                if (!BlobExtractor.passes(maxX[global] - minX[global] + 1, maxY[global] - minY[global] + 1, area[global], settings))
+                    continue;
+
+                if (count == order.length)
+                    order = Arrays.copyOf(order, count * 2);
+
+                order[count++] = first[global] << 32 | global;
+            }
+        }
+
+        // In the order of their first pixels, as BlobExtractor lists them
+        Arrays.sort(order, 0, count);
+
+        int offsetX = (int)offset.x, offsetY = (int)offset.y;
+
+        for (int i = 0; i < count; i++) {
+            int global = (int)order[i];
+
+            output.add(
+                minX[global] + offsetX,
+                minY[global] + offsetY,
+                maxX[global] - minX[global] + 1,
+                maxY[global] - minY[global] + 1,
+                area[global],
+                sumX[global] / (double)area[global] + offsetX,
+                sumY[global] / (double)area[global] + offsetY
+            );
+        }
+    }
+
+    private int find(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+
+        return label;
+    }
+
+    /**
+     * Joins two labels, keeping the lower one as the root.
+     */
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+
+        if (a < b)
+            parent[b] = a;
+        else if (b < a)
+            parent[a] = b;
+    }
+
+    private void ensureCapacity(int total) {
+        if (parent.length >= total)
+            return;
+
+        int length = total * 2;
+        parent = new int[length];
+        minX = new int[length];
+        minY = new int[length];
+        maxX = new int[length];
+        maxY = new int[length];
+        area = new int[length];
+        first = new long[length];
+        sumX = new long[length];
+        sumY = new long[length];
+    }
+}
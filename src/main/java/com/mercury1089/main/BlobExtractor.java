@@ -0,0 +1,179 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.MatPool;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+/**
+ * This class finds every blob of a binary mask in one labeling pass, and gets the area, bounding box
+ * and centroid of all of them in one more pass over the labels, instead of building a contour for each one
+ * and measuring them one at a time. Unlike contours, a blob has no holes to skip, since each one is only found once.
+ *
+ * <p>The labels come from {@link Imgproc#connectedComponents}, but the stats are gathered in Java:
+ * {@code connectedComponentsWithStats} takes about four times as long as labeling alone.
+ * They are the same stats it gives.
+ *
+ * <p>Blobs are filtered by the area, width, height and ratio of a {@link FilterContourSettings}.
+ * The area is the number of pixels, which is a bit more than the area of the contour around them.
+ * The perimeter, vertex and solidity criteria need the outline, so they do not apply to blobs.
+ */
+public class BlobExtractor {
+    // Label of every pixel of the last mask, reused between frames
+    int[] labelValues = new int[0];
+
+    // Stats of every label, indexed by label. The first pixel of a label is the leftmost one in its top row.
+    int[]
+        minX = new int[16],
+        minY = new int[16],
+        maxX = new int[16],
+        maxY = new int[16],
+        firstX = new int[16],
+        area = new int[16];
+    long[]
+        sumX = new long[16],
+        sumY = new long[16];
+
+    // Blobs that met the criteria, as first pixel << 32 | label
+    private long[] order = new long[16];
+
+    /**
+     * Finds the blobs of a mask that meet the settings.
+     *
+     * @param mask     the binary mask to find blobs in
+     * @param offset   where the mask is in the full frame, added to every position
+     * @param settings the criteria each blob has to meet
+     * @param output   the blobs to store the ones that met the criteria in, in the order of their first pixels,
+     *                 top to bottom and then left to right. It is cleared first.
+     */
+    public void extract(Mat mask, Point offset, FilterContourSettings settings, Blobs output) {
+        output.count = 0;
+
+        int
+            count = label(mask),
+            cols = mask.cols(),
+            passed = 0;
+
+        // Label 0 is the background
+        for (int i = 1; i < count; i++) {
+            if (!passes(maxX[i] - minX[i] + 1, maxY[i] - minY[i] + 1, area[i], settings))
+                continue;
+
+            if (passed == order.length)
+                order = Arrays.copyOf(order, passed * 2);
+
+            order[passed++] = ((long)minY[i] * cols + firstX[i]) << 32 | i;
+        }
+
+        // The order labels come out in depends on the labeling algorithm OpenCV picks, so put them in one that does not
+        Arrays.sort(order, 0, passed);
+
+        int offsetX = (int)offset.x, offsetY = (int)offset.y;
+
+        for (int p = 0; p < passed; p++) {
+            int
+                i = (int)order[p],
+                width = maxX[i] - minX[i] + 1,
+                height = maxY[i] - minY[i] + 1;
+
+            output.add(
+                minX[i] + offsetX,
+                minY[i] + offsetY,
+                width,
+                height,
+                area[i],
+                sumX[i] / (double)area[i] + offsetX,
+                sumY[i] / (double)area[i] + offsetY
+            );
+        }
+    }
+
+    /**
+     * Labels the blobs of a mask and works out the stats of every label.
+     *
+     * @param mask the binary mask to label
+     * @return the number of labels, including the background, which is label 0
+     */
+    int label(Mat mask) {
+        int
+            rows = mask.rows(),
+            cols = mask.cols();
+
+        Mat labels = MatPool.SHARED.borrow(rows, cols, CvType.CV_32SC1);
+        int count = Imgproc.connectedComponents(mask, labels, 8, CvType.CV_32S);
+
+        // Only grows, so a search window that changes size does not reallocate it
+        if (labelValues.length < rows * cols)
+            labelValues = new int[rows * cols];
+
+        labels.get(0, 0, labelValues);
+        MatPool.SHARED.giveBack(labels);
+
+        gatherStats(count, rows, cols);
+        return count;
+    }
+
+    /**
+     * Checks a blob against the area, width, height and ratio of the settings.
+     */
+    static boolean passes(int width, int height, int area, FilterContourSettings settings) {
+        if (area < settings.minArea)
+            return false;
+        if (width < settings.minWidth || width > settings.maxWidth)
+            return false;
+        if (height < settings.minHeight || height > settings.maxHeight)
+            return false;
+
+        double ratio = width / (double)height;
+        return ratio >= settings.minRatio && ratio <= settings.maxRatio;
+    }
+
+    /**
+     * Works out the bounds, area and sum of the positions of every label.
+     */
+    private void gatherStats(int count, int rows, int cols) {
+        if (area.length < count) {
+            int length = count * 2;
+            minX = new int[length];
+            minY = new int[length];
+            maxX = new int[length];
+            maxY = new int[length];
+            firstX = new int[length];
+            area = new int[length];
+            sumX = new long[length];
+            sumY = new long[length];
+        }
+
+        for (int i = 1; i < count; i++) {
+            minX[i] = minY[i] = Integer.MAX_VALUE;
+            maxX[i] = maxY[i] = -1;
+            area[i] = 0;
+            sumX[i] = sumY[i] = 0;
+        }
+
+        int[] values = labelValues;
+
+        // Rows are scanned top to bottom, so the first row of a label is its top and the last is its bottom
+        for (int y = 0, i = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++, i++) {
+                int label = values[i];
+                if (label == 0)
+                    continue;
+
+                if (x < minX[label]) minX[label] = x;
+                if (x > maxX[label]) maxX[label] = x;
+                if (minY[label] == Integer.MAX_VALUE) {
+                    minY[label] = y;
+                    firstX[label] = x;
+                }
+                maxY[label] = y;
+                area[label]++;
+                sumX[label] += x;
+                sumY[label] += y;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.mercury1089.main;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the blobs found in a frame by a {@link BlobExtractor}, one array per value,
+ * so they can be compared without a {@link org.opencv.core.MatOfPoint} or JNI call for each of them.
+ * Blob i is at index i of every array, and only the first {@link #count} are valid.
+ */
+public class Blobs {
+    public int count = 0;
+
+    // Bounding box of each blob, in full frame coordinates
+    public int[]
+        x = new int[16],
+        y = new int[16],
+        width = new int[16],
+        height = new int[16];
+
+    // Number of pixels in each blob
+    public int[] area = new int[16];
+
+    // Center of mass of each blob, in full frame coordinates
+    public double[]
+        centroidX = new double[16],
+        centroidY = new double[16];
+
+    /**
+     * Adds a blob, growing the arrays if they are full.
+     */
+    void add(int x, int y, int width, int height, int area, double centroidX, double centroidY) {
+        if (count == this.x.length)
+            grow(count * 2);
+
+        this.x[count] = x;
+        this.y[count] = y;
+        this.width[count] = width;
+        this.height[count] = height;
+        this.area[count] = area;
+        this.centroidX[count] = centroidX;
+        this.centroidY[count] = centroidY;
+        count++;
+    }
+
+    private void grow(int length) {
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        width = Arrays.copyOf(width, length);
+        height = Arrays.copyOf(height, length);
+        area = Arrays.copyOf(area, length);
+        centroidX = Arrays.copyOf(centroidX, length);
+        centroidY = Arrays.copyOf(centroidY, length);
+    }
+}
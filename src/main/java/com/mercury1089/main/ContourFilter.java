@@ -0,0 +1,238 @@
+package com.mercury1089.main;
+
+import org.opencv.core.MatOfPoint;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class filters contours by every criterion in a {@link FilterContourSettings}.
+ * The points of each contour are read out at once, and everything is measured from them in Java,
+ * cheapest check first, so that most contours are rejected before the convex hull is ever needed.
+ * Areas and bounds are the same as what {@code Imgproc.contourArea} and {@code Imgproc.boundingRect} give.
+ * All buffers are kept between frames, so once warmed up it does not allocate anything.
+ */
+public class ContourFilter {
+    // Buffer for the points of a contour, as x, y pairs
+    private int[] points = new int[256];
+
+    // Points of a contour sorted by x, then y, packed into longs; and the hull built from them
+    private long[] sorted = new long[128];
+    private int[]
+        hullX = new int[256],
+        hullY = new int[256];
+
+    /**
+     * Keeps the contours that meet all of the settings.
+     *
+     * @param input    the contours to filter
+     * @param settings the criteria each contour has to meet
+     * @param output   the list to put the contours that met the criteria in. It is cleared first.
+     */
+    public void filter(List<MatOfPoint> input, FilterContourSettings settings, List<MatOfPoint> output) {
+        output.clear();
+
+        for (int i = 0; i < input.size(); i++) {
+            MatOfPoint contour = input.get(i);
+
+            if (accept(contour, settings))
+                output.add(contour);
+        }
+    }
+
+    private boolean accept(MatOfPoint contour, FilterContourSettings settings) {
+        int count = readPoints(contour);
+        if (count < settings.minVerts || count > settings.maxVerts || count == 0)
+            return false;
+
+        // Bounds
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+        for (int i = 0; i < count * 2; i += 2) {
+            int x = points[i], y = points[i + 1];
+
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+
+        int width = maxX - minX + 1, height = maxY - minY + 1;
+        if (width < settings.minWidth || width > settings.maxWidth)
+            return false;
+        if (height < settings.minHeight || height > settings.maxHeight)
+            return false;
+
+        double ratio = width / (double)height;
+        if (ratio < settings.minRatio || ratio > settings.maxRatio)
+            return false;
+
+        // Area
+        double area = polygonArea(points, points, count, 2, 1);
+        if (area < settings.minArea)
+            return false;
+
+        // Perimeter
+        if (settings.minPerimeter > 0 && perimeter(count) < settings.minPerimeter)
+            return false;
+
+        // Solidity, only if it could rule anything out. A convex contour is its own hull.
+        // A hull with no area has no solidity, so the contour is thrown out rather than passing as NaN.
+        if (settings.solidity[0] > 0 || settings.solidity[1] < 100) {
+            double solid = 100;
+            if (!isConvex(count)) {
+                double hull = hullArea(count);
+                if (hull <= 0)
+                    return false;
+                solid = 100 * area / hull;
+            }
+            if (solid < settings.solidity[0] || solid > settings.solidity[1])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads every point of a contour into the points buffer.
+     * This is usually a single call, since the buffer only has to grow for the largest contours.
+     *
+     * @return the number of points
+     */
+    private int readPoints(MatOfPoint contour) {
+        // get() gives the number of bytes read, which falls short of the contour if the buffer is too small
+        int count = contour.get(0, 0, points) / 8;
+
+        if (count * 2 == points.length) {
+            int rows = contour.rows();
+
+            if (rows > count) {
+                points = new int[rows * 4];
+                count = contour.get(0, 0, points) / 8;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Shoelace formula, the same way {@code Imgproc.contourArea} does it.
+     * The x and y of point i are xs[i * stride] and ys[i * stride + yOffset].
+     */
+    private static double polygonArea(int[] xs, int[] ys, int count, int stride, int yOffset) {
+        double sum = 0;
+        int prevX = xs[(count - 1) * stride], prevY = ys[(count - 1) * stride + yOffset];
+
+        for (int i = 0; i < count; i++) {
+            int x = xs[i * stride], y = ys[i * stride + yOffset];
+            sum += (double)prevX * y - (double)x * prevY;
+            prevX = x;
+            prevY = y;
+        }
+
+        return Math.abs(sum * 0.5);
+    }
+
+    private double perimeter(int count) {
+        double sum = 0;
+        int prevX = points[(count - 1) * 2], prevY = points[(count - 1) * 2 + 1];
+
+        for (int i = 0; i < count * 2; i += 2) {
+            double dx = points[i] - prevX, dy = points[i + 1] - prevY;
+            sum += Math.sqrt(dx * dx + dy * dy);
+            prevX = points[i];
+            prevY = points[i + 1];
+        }
+
+        return sum;
+    }
+
+    /**
+     * @return true if the contour always turns the same way, as targets usually do
+     */
+    private boolean isConvex(int count) {
+        if (count < 3)
+            return true;
+
+        boolean left = false, right = false;
+        int
+            ax = points[(count - 2) * 2], ay = points[(count - 2) * 2 + 1],
+            bx = points[(count - 1) * 2], by = points[(count - 1) * 2 + 1];
+
+        for (int i = 0; i < count * 2; i += 2) {
+            int cx = points[i], cy = points[i + 1];
+            long turn = (long)(bx - ax) * (cy - ay) - (long)(by - ay) * (cx - ax);
+
+            left |= turn > 0;
+            right |= turn < 0;
+            if (left && right)
+                return false;
+
+            // Doubling back along a line, as thin contours do
+            if (turn == 0 && (long)(bx - ax) * (cx - bx) + (long)(by - ay) * (cy - by) < 0)
+                return false;
+
+            ax = bx;
+            ay = by;
+            bx = cx;
+            by = cy;
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the convex hull of the points with Andrew's monotone chain and gets its area.
+     */
+    private double hullArea(int count) {
+        if (sorted.length < count) {
+            sorted = new long[count * 2];
+            hullX = new int[count * 4];
+            hullY = new int[count * 4];
+        }
+
+        // Contours found in an offset window are never negative, so x and y pack into a long that sorts by x, then y
+        for (int i = 0; i < count; i++)
+            sorted[i] = (long)points[i * 2] << 32 | (points[i * 2 + 1] & 0xFFFFFFFFL);
+
+        Arrays.sort(sorted, 0, count);
+
+        int size = 0;
+
+        // Lower hull, then upper hull
+        for (int pass = 0; pass < 2; pass++) {
+            int start = size;
+
+            for (int j = 0; j < count; j++) {
+                long point = sorted[pass == 0 ? j : count - 1 - j];
+                int x = (int)(point >> 32), y = (int)point;
+
+                while (size - start >= 2 && cross(size, x, y) <= 0)
+                    size--;
+
+                hullX[size] = x;
+                hullY[size] = y;
+                size++;
+            }
+
+            // The last point is the first point of the other half
+            size--;
+        }
+
+        return size < 3 ? 0 : polygonArea(hullX, hullY, size, 1, 0);
+    }
+
+    /**
+     * @return the cross product of the last two points of the hull and a new point;
+     *         positive if they turn counter-clockwise
+     */
+    private long cross(int size, int x, int y) {
+        long
+            ax = hullX[size - 1] - hullX[size - 2],
+            ay = hullY[size - 1] - hullY[size - 2],
+            bx = x - hullX[size - 2],
+            by = y - hullY[size - 2];
+
+        return ax * by - ay * bx;
+    }
+}
@@ -0,0 +1,200 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.DemandStream;
+import com.mercury1089.vision.FrameMetrics;
+import com.mercury1089.vision.FrameRecorder;
+import com.mercury1089.vision.FrameSource;
+import com.mercury1089.vision.MatPool;
+import com.mercury1089.vision.MotionGate;
+import com.mercury1089.vision.SharedFrame;
+import com.mercury1089.vision.Yuyv;
+import edu.wpi.first.wpilibj.tables.ITable;
+import org.opencv.core.Mat;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class creates a {@link Thread} that grabs each frame of a video feed once and runs several pipelines on it
+ * at the same time, each looking for its own target and publishing to its own network table.
+ * The pipelines share the frame and any color space it is converted to, so it is only converted once,
+ * and run on the common fork/join pool, with the thread itself running the first one.
+ */
+public class FanOutThread extends Thread {
+    /**
+     * One pipeline run on every frame, along with everything that finds, tracks and publishes its target.
+     */
+    public static class Branch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MercPipeline PIPELINE;
+        private final TargetFinder FINDER;
+        private final TargetResult RESULT = new TargetResult();
+        private final RoiTracker TRACKER;
+        private final TargetTracker PREDICTOR;
+        private final TargetPublisher PUBLISHER;
+        private final PoseEstimator POSE;
+        private final FrameMetrics<FrameStage> METRICS;
+        private final ITable METRICS_TABLE;
+
+        // Set before every frame
+        private SharedFrame frame;
+        private long captureTime;
+        private boolean process;
+
+        /**
+         * @param pipeline           the pipeline to process each frame with
+         * @param trackingSettings   the settings for only searching around the target once it is found
+         * @param predictionSettings the settings for smoothing and predicting the motion of the target
+         * @param pairingSettings    the expected geometry of the target, to pick it out of everything found
+         * @param table              the network table to output metrics to
+         * @param publisher          the publisher to output values with
+         * @param metrics            the metrics to time each stage with, published to the "metrics" sub table
+         * @param pose               the estimator to work out where the target is with, or null to not
+         */
+        public Branch(MercPipeline pipeline, TrackingSettings trackingSettings, PredictionSettings predictionSettings, PairingSettings pairingSettings, ITable table, TargetPublisher publisher, FrameMetrics<FrameStage> metrics, PoseEstimator pose) {
+            PIPELINE = pipeline;
+            FINDER = new TargetFinder(pairingSettings);
+            TRACKER = new RoiTracker(trackingSettings);
+            PREDICTOR = new TargetTracker(predictionSettings);
+            PUBLISHER = publisher;
+            POSE = pose;
+            METRICS = metrics;
+            METRICS_TABLE = table.getSubTable("metrics");
+        }
+
+        @Override
+        protected void compute() {
+            // The result is reset and filled in by the finder
+            if (process) {
+                PIPELINE.process(frame);
+                long time = System.nanoTime();
+                FINDER.find(PIPELINE, RESULT);
+                PREDICTOR.update(RESULT, captureTime);
+                time = METRICS.recordSince(FrameStage.PAIR, time);
+
+                if (POSE != null) {
+                    POSE.solve(RESULT);
+                    METRICS.recordSince(FrameStage.POSE, time);
+                }
+            } else {
+                // The last result is not a new measurement, so the track is only moved forward
+                PREDICTOR.skip(RESULT, captureTime);
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@link Thread} named "FanOutThread-name" that processes the input from the specified
+     * {@link FrameSource} with every branch, and outputs the frame with every target drawn on into the specified
+     * {@link DemandStream}, while it is watched. Waiting for frames, gating, drawing and streaming are timed
+     * in the metrics of the first branch.
+     *
+     * @param sink       the input feed to get an image from to process
+     * @param outputFeed the output feed to output the processed frame, whenever it wants one
+     * @param branches   the pipelines to run on every frame, the first of which is the camera's own target
+     * @param recorder   the recorder to record each frame and what the first branch found in it with, or null to not record
+     * @param gate       the gate to skip processing frames that have not changed with, or null to process every frame
+     * @param name       the name of the vision to append to the prefix
+     */
+    public FanOutThread(FrameSource sink, DemandStream outputFeed, List<Branch> branches, FrameRecorder recorder, MotionGate gate, String name) {
+        super (() -> {
+            // The frame comes from the shared pool so its memory is counted
+            Mat img = MatPool.SHARED.borrow(Main.RES_Y, Main.RES_X, sink.frameType());
+            // YUYV frames are converted to BGR to be drawn on and streamed
+            Mat bgr = new Mat();
+            SharedFrame frame = new SharedFrame(img);
+            Branch[] all = branches.toArray(new Branch[0]);
+            FrameMetrics<FrameStage> metrics = all[0].METRICS;
+            long sequence = 0;
+
+            while (!Thread.interrupted() && !sink.isFinished()) {
+                // Grab a frame. If it has a frame time of 0, there was an error.
+                long time = System.nanoTime();
+                long captureTime = sink.grabFrame(img);
+                if (captureTime == 0) {
+                    System.out.println(Thread.currentThread().getName() + ": " + sink.getError());
+                    continue;
+                }
+
+                sequence++;
+                frame.reset();
+
+                double startTime = System.currentTimeMillis();
+                time = metrics.recordSince(FrameStage.GRAB_WAIT, time);
+
+                // Copy the frame out before it is drawn on. If the recorder is behind, the frame is dropped.
+                FrameRecorder.Slot slot = recorder != null ? recorder.claim() : null;
+                if (slot != null)
+                    slot.copyFrame(img);
+
+                // If nothing has changed since the last frame processed, every branch's last result still holds
+                boolean process = gate == null || gate.shouldProcess(img, captureTime);
+                if (gate != null)
+                    time = metrics.recordSince(FrameStage.GATE, time);
+
+                for (Branch branch : all) {
+                    branch.reinitialize();
+                    branch.frame = frame;
+                    branch.captureTime = captureTime;
+                    branch.process = process;
+                }
+
+                // Nothing writes to the frame until every branch is done with it
+                for (int i = all.length - 1; i > 0; i--)
+                    all[i].fork();
+
+                all[0].invoke();
+
+                for (int i = 1; i < all.length; i++)
+                    all[i].join();
+
+                time = System.nanoTime();
+
+                // Only annotate the frame if it is going to be streamed
+                boolean streaming = outputFeed.wantsFrame();
+                Mat annotated = img;
+                if (streaming) {
+                    if (Yuyv.isYuyv(img)) {
+                        Yuyv.toBgr(img, bgr);
+                        annotated = bgr;
+                    }
+
+                    for (Branch branch : all) {
+                        branch.FINDER.draw(annotated, branch.RESULT);
+                        branch.TRACKER.draw(annotated, branch.PIPELINE);
+                    }
+
+                    time = metrics.recordSince(FrameStage.DRAW, time);
+                }
+
+                // Narrow down where to search in the next frame, and output every result to its own table
+                for (Branch branch : all) {
+                    if (process)
+                        branch.TRACKER.update(branch.PIPELINE, branch.RESULT, img.cols(), img.rows());
+
+                    branch.PUBLISHER.publish(branch.RESULT, sequence, captureTime, System.currentTimeMillis() - startTime);
+                }
+
+                if (slot != null)
+                    recorder.submit(slot, sequence, captureTime, all[0].PUBLISHER.record());
+                time = metrics.recordSince(FrameStage.PUBLISH, time);
+
+                // The Mat is not released so that the next grab can reuse its buffer
+                if (streaming) {
+                    outputFeed.putFrame(annotated);
+                    metrics.recordSince(FrameStage.PUT_FRAME, time);
+                }
+
+                for (Branch branch : all) {
+                    branch.METRICS.frameDone();
+                    branch.METRICS.publishIfDue(branch.METRICS_TABLE);
+                }
+            }
+
+            frame.release();
+            bgr.release();
+            MatPool.SHARED.giveBack(img);
+        }, "FanOutThread-" + name);
+    }
+}
@@ -0,0 +1,147 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.DemandStream;
+import com.mercury1089.vision.FrameMetrics;
+import com.mercury1089.vision.FrameRecorder;
+import com.mercury1089.vision.MotionGate;
+import com.mercury1089.vision.VisionScheduler;
+import com.mercury1089.vision.Yuyv;
+import edu.wpi.first.wpilibj.networktables.NetworkTable;
+import edu.wpi.first.wpilibj.tables.ITable;
+import org.opencv.core.Mat;
+
+/**
+ * Everything done with a frame of one camera once it is grabbed: recording it, processing it, finding, tracking and
+ * publishing the target, and drawing and streaming it. A {@link VisionThread} runs one on every frame it grabs,
+ * and a {@link VisionScheduler} runs one on every frame it gets to.
+ * Frames have to be handed to it one at a time.
+ */
+public class FrameProcessor implements VisionScheduler.FrameHandler {
+    private final DemandStream OUTPUT_FEED;
+    private final MercPipeline PIPELINE;
+    private final TargetFinder FINDER;
+    private final TargetResult RESULT = new TargetResult();
+    private final RoiTracker TRACKER;
+    private final TargetTracker PREDICTOR;
+    private final TargetPublisher PUBLISHER;
+    private final FrameMetrics<FrameStage> METRICS;
+    private final ITable METRICS_TABLE;
+    private final FrameRecorder RECORDER;
+    private final MotionGate GATE;
+    private final PoseEstimator POSE;
+
+    // YUYV frames are converted to BGR to be drawn on and streamed
+    private final Mat BGR = new Mat();
+
+    /**
+     * @param outputFeed the output feed to output the processed frame, whenever it wants one
+     * @param pipeline the pipeline to use to process the image
+     * @param trackingSettings the settings for only searching around a target once it is found
+     * @param predictionSettings the settings for smoothing and predicting the motion of the target
+     * @param pairingSettings the expected geometry of the target, to pick it out of everything found
+     * @param table the network table to output metrics to
+     * @param publisher the publisher to output values with
+     * @param metrics the metrics to time each stage with, published to the "metrics" sub table
+     * @param recorder the recorder to record each frame and what was found in it with, or null to not record
+     * @param gate the gate to skip processing frames that have not changed with, or null to process every frame
+     * @param pose the estimator to work out where the target is with, or null to only publish where it is in the frame
+     */
+    public FrameProcessor(DemandStream outputFeed, MercPipeline pipeline, TrackingSettings trackingSettings, PredictionSettings predictionSettings, PairingSettings pairingSettings, NetworkTable table, TargetPublisher publisher, FrameMetrics<FrameStage> metrics, FrameRecorder recorder, MotionGate gate, PoseEstimator pose) {
+        OUTPUT_FEED = outputFeed;
+        PIPELINE = pipeline;
+        FINDER = new TargetFinder(pairingSettings);
+        TRACKER = new RoiTracker(trackingSettings);
+        PREDICTOR = new TargetTracker(predictionSettings);
+        PUBLISHER = publisher;
+        METRICS = metrics;
+        METRICS_TABLE = table.getSubTable("metrics");
+        RECORDER = recorder;
+        GATE = gate;
+        POSE = pose;
+    }
+
+    /**
+     * Handles a frame that was just grabbed. The frame may be drawn on.
+     *
+     * @param img the frame
+     * @param sequence the number of the frame, counting up by one for every frame grabbed
+     * @param captureTime the time of the frame given by the source, in microseconds
+     */
+    @Override
+    public void process(Mat img, long sequence, long captureTime) {
+        long time = System.nanoTime();
+        double startTime = System.currentTimeMillis();
+
+        // Copy the frame out before it is drawn on. If the recorder is behind, the frame is dropped.
+        FrameRecorder.Slot slot = RECORDER != null ? RECORDER.claim() : null;
+        if (slot != null)
+            slot.copyFrame(img);
+
+        // If nothing has changed since the last frame processed, its result still holds,
+        // and is published again as the result of this frame
+        boolean process = GATE == null || GATE.shouldProcess(img, captureTime);
+        if (GATE != null)
+            time = METRICS.recordSince(FrameStage.GATE, time);
+
+        // Process frame under here. The result is reset and filled in by the finder.
+        // A skipped frame only moves the track forward, since the last result is not a new measurement.
+        if (process) {
+            PIPELINE.process(img);
+            time = System.nanoTime();
+            FINDER.find(PIPELINE, RESULT);
+            PREDICTOR.update(RESULT, captureTime);
+        } else {
+            PREDICTOR.skip(RESULT, captureTime);
+        }
+        time = METRICS.recordSince(FrameStage.PAIR, time);
+
+        // A skipped frame keeps the last pose along with the rest of the result
+        if (process && POSE != null) {
+            POSE.solve(RESULT);
+            time = METRICS.recordSince(FrameStage.POSE, time);
+        }
+
+        // Only annotate the frame if it is going to be streamed
+        boolean streaming = OUTPUT_FEED.wantsFrame();
+        Mat annotated = img;
+        if (streaming) {
+            if (Yuyv.isYuyv(img)) {
+                Yuyv.toBgr(img, BGR);
+                annotated = BGR;
+            }
+
+            FINDER.draw(annotated, RESULT);
+            TRACKER.draw(annotated, PIPELINE);
+            time = METRICS.recordSince(FrameStage.DRAW, time);
+        }
+
+        // Narrow down where to search in the next frame
+        if (process)
+            TRACKER.update(PIPELINE, RESULT, img.cols(), img.rows());
+
+        // Output some numbers to our network table
+        PUBLISHER.publish(RESULT, sequence, captureTime, System.currentTimeMillis() - startTime);
+        if (slot != null)
+            RECORDER.submit(slot, sequence, captureTime, PUBLISHER.record());
+        time = METRICS.recordSince(FrameStage.PUBLISH, time);
+
+        // Here is where you would write a processed image that you want to restream
+        // This will most likely be a marked up image of what the camera sees
+        // For now, we are just going to stream the HSV image
+        // The Mat is not released so that the next grab can reuse its buffer
+        if (streaming) {
+            OUTPUT_FEED.putFrame(annotated);
+            METRICS.recordSince(FrameStage.PUT_FRAME, time);
+        }
+
+        METRICS.frameDone();
+        METRICS.publishIfDue(METRICS_TABLE);
+    }
+
+    /**
+     * Frees the frame kept for drawing on YUYV frames.
+     */
+    public void release() {
+        BGR.release();
+    }
+}
@@ -0,0 +1,33 @@
+package com.mercury1089.main;
+
+/**
+ * The stages a frame goes through, as timed by {@link com.mercury1089.vision.FrameMetrics}.
+ * Each stage is published under its key.
+ */
+public enum FrameStage {
+    GRAB_WAIT("grabWait"),
+    GATE("gate"),
+    CONVERT("convert"),
+    THRESHOLD("threshold"),
+    FIND_CONTOURS("findContours"),
+    FILTER("filter"),
+    LABEL("label"),
+    COARSE("coarse"),
+    BANDS("bands"),
+    PAIR("pair"),
+    POSE("pose"),
+    DRAW("draw"),
+    PUT_FRAME("putFrame"),
+    PUBLISH("publish");
+
+    private final String KEY;
+
+    FrameStage(String key) {
+        KEY = key;
+    }
+
+    @Override
+    public String toString() {
+        return KEY;
+    }
+}
@@ -0,0 +1,113 @@
+package com.mercury1089.main;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * {@link ThresholdEngine} that does all of the pixel work in Java, in a single pass over the frame
+ * that writes the mask directly, without ever building an HLS image. Its mask is the same as
+ * {@code cvtColor} + {@code inRange}, pixel for pixel.
+ *
+ * <p>Luminance and saturation only depend on the brightest and darkest channel of a pixel, so whether
+ * they are within the bounds is looked up in a 64 KB table indexed by those two. The hue is only
+ * worked out for the few pixels that pass, which are usually just the target.
+ */
+public class JavaThresholdEngine implements ThresholdEngine {
+    /**
+     * Everything that depends on the bounds, swapped out all at once when they change.
+     */
+    private static class Bounds {
+        // 1 if a pixel with this max << 8 | min is within the luminance and saturation bounds
+        final byte[] LUM_SAT = new byte[256 * 256];
+        final double HUE_MIN, HUE_MAX;
+
+        Bounds(double[] hue, double[] sat, double[] lum) {
+            HUE_MIN = hue[0];
+            HUE_MAX = hue[1];
+
+            int[] hls = new int[3];
+
+            for (int max = 0; max < 256; max++) {
+                for (int min = 0; min <= max; min++) {
+                    LookupThresholdEngine.bgrToHls(min, min, max, hls);
+
+                    if (hls[1] >= lum[0] && hls[1] <= lum[1] && hls[2] >= sat[0] && hls[2] <= sat[1])
+                        LUM_SAT[max << 8 | min] = 1;
+                }
+            }
+        }
+    }
+
+    private volatile Bounds bounds;
+
+    /**
+     * Arrays reused between frames by one thread.
+     */
+    private static class Buffers {
+        byte[] pixels = new byte[0], mask = new byte[0];
+        final int[] hls = new int[3];
+    }
+
+    // Each thread has its own, so bands of a frame can be thresholded at once
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    @Override
+    public void setBounds(double[] hue, double[] sat, double[] lum) {
+        // The table takes well under a millisecond to build, so there is no need to do it in the background
+        bounds = new Bounds(hue, sat, lum);
+    }
+
+    @Override
+    public void threshold(Mat input, Mat out) {
+        Bounds current = bounds;
+
+        if (current == null)
+            throw new IllegalStateException("setBounds has to be called before threshold");
+
+        int
+            rows = input.rows(),
+            cols = input.cols(),
+            size = rows * cols;
+
+        // Only ever grown, since a tracking window changes size from frame to frame.
+        // get and put only copy as much as the frame holds.
+        Buffers buffers = this.buffers.get();
+        if (buffers.mask.length < size) {
+            buffers.pixels = new byte[size * 3];
+            buffers.mask = new byte[size];
+        }
+
+        byte[]
+            pixels = buffers.pixels,
+            mask = buffers.mask;
+        int[] hls = buffers.hls;
+
+        out.create(rows, cols, CvType.CV_8UC1);
+        input.get(0, 0, pixels);
+
+        byte[] lumSat = current.LUM_SAT;
+        double hueMin = current.HUE_MIN, hueMax = current.HUE_MAX;
+
+        for (int i = 0, p = 0; i < size; i++, p += 3) {
+            int
+                b = pixels[p] & 0xFF,
+                g = pixels[p + 1] & 0xFF,
+                r = pixels[p + 2] & 0xFF,
+                max = Math.max(r, Math.max(g, b)),
+                min = Math.min(r, Math.min(g, b));
+
+            byte value = 0;
+
+            if (lumSat[max << 8 | min] != 0) {
+                LookupThresholdEngine.bgrToHls(b, g, r, hls);
+
+                if (hls[0] >= hueMin && hls[0] <= hueMax)
+                    value = -1;
+            }
+
+            mask[i] = value;
+        }
+
+        out.put(0, 0, mask);
+    }
+}
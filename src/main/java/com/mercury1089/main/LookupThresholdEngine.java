@@ -0,0 +1,193 @@
+package com.mercury1089.main;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link ThresholdEngine} that looks every pixel up in a table of quantized BGR colors.
+ * Each bit of the table says whether that color falls within the HSL bounds, so a frame
+ * is segmented in a single pass without ever being converted to HLS.
+ * The table is rebuilt on a background thread whenever the bounds change; frames keep
+ * using the old table until the new one is ready.
+ */
+public class LookupThresholdEngine implements ThresholdEngine {
+    public static final int DEFAULT_BITS = 6;
+
+    // One thread shared by every lookup engine, since tables are only rebuilt when someone is tuning
+    static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LookupThresholdEngine-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int BITS, SHIFT;
+
+    private final AtomicReference<double[]> pendingBounds = new AtomicReference<>();
+    private volatile long[] table;
+
+    /**
+     * Arrays reused between frames by one thread.
+     */
+    private static class Buffers {
+        byte[] pixels = new byte[0], mask = new byte[0];
+    }
+
+    // Each thread has its own, so bands of a frame can be thresholded at once
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    public LookupThresholdEngine() {
+        this(DEFAULT_BITS);
+    }
+
+    /**
+     * @param bits the number of bits kept from each color channel, from 1 to 8.
+     *             The table takes 2^(3 * bits) bits, so 6 is 32 KB and 8 is 2 MB.
+     */
+    public LookupThresholdEngine(int bits) {
+        if (bits < 1 || bits > 8)
+            throw new IllegalArgumentException("bits must be from 1 to 8, got " + bits);
+
+        BITS = bits;
+        SHIFT = 8 - bits;
+    }
+
+    @Override
+    public void setBounds(double[] hue, double[] sat, double[] lum) {
+        double[] bounds = {hue[0], hue[1], sat[0], sat[1], lum[0], lum[1]};
+
+        // There has to be a table before the first frame, so build that one right away
+        if (table == null) {
+            table = buildTable(bounds);
+            return;
+        }
+
+        // Only the latest bounds matter, so any bounds that were not built yet are replaced
+        if (pendingBounds.getAndSet(bounds) == null)
+            BUILDER.execute(this::rebuild);
+    }
+
+    private void rebuild() {
+        double[] bounds = pendingBounds.getAndSet(null);
+
+        if (bounds != null)
+            table = buildTable(bounds);
+    }
+
+    @Override
+    public void threshold(Mat input, Mat out) {
+        long[] lut = table;
+
+        if (lut == null)
+            throw new IllegalStateException("setBounds has to be called before threshold");
+
+        int
+            rows = input.rows(),
+            cols = input.cols(),
+            size = rows * cols;
+
+        // Only ever grown, since a tracking window changes size from frame to frame.
+        // get and put only copy as much as the frame holds.
+        Buffers buffers = this.buffers.get();
+        if (buffers.mask.length < size) {
+            buffers.pixels = new byte[size * 3];
+            buffers.mask = new byte[size];
+        }
+
+        byte[]
+            pixels = buffers.pixels,
+            mask = buffers.mask;
+
+        out.create(rows, cols, CvType.CV_8UC1);
+        input.get(0, 0, pixels);
+
+        int shift = SHIFT, bits = BITS;
+
+        for (int i = 0, p = 0; i < size; i++, p += 3) {
+            int index =
+                ((pixels[p] & 0xFF) >>> shift) << (bits * 2) |
+                ((pixels[p + 1] & 0xFF) >>> shift) << bits |
+                ((pixels[p + 2] & 0xFF) >>> shift);
+
+            // Either 0 or -1, which is 255 as an unsigned byte
+            mask[i] = (byte)-((lut[index >>> 6] >>> index) & 1);
+        }
+
+        out.put(0, 0, mask);
+    }
+
+    /**
+     * Builds a table with a bit for every quantized BGR color. Each color is tested at the center of its bin.
+     */
+    private long[] buildTable(double[] bounds) {
+        int
+            levels = 1 << BITS,
+            half = SHIFT == 0 ? 0 : 1 << (SHIFT - 1);
+
+        long[] lut = new long[Math.max(1, (levels * levels * levels) >>> 6)];
+        int[] hls = new int[3];
+
+        for (int b = 0; b < levels; b++) {
+            for (int g = 0; g < levels; g++) {
+                for (int r = 0; r < levels; r++) {
+                    bgrToHls((b << SHIFT) | half, (g << SHIFT) | half, (r << SHIFT) | half, hls);
+
+                    if (hls[0] >= bounds[0] && hls[0] <= bounds[1] &&
+                        hls[2] >= bounds[2] && hls[2] <= bounds[3] &&
+                        hls[1] >= bounds[4] && hls[1] <= bounds[5]) {
+                        int index = (b << (BITS * 2)) | (g << BITS) | r;
+                        lut[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+
+        return lut;
+    }
+
+    /**
+     * Converts a BGR color to HLS the same way {@code Imgproc.cvtColor} does for 8-bit images.
+     *
+     * @param hls the array to store the hue, luminance and saturation in
+     */
+    static void bgrToHls(int blue, int green, int red, int[] hls) {
+        // OpenCV scales by the reciprocal rather than dividing, which rounds differently
+        float
+            scale = 1f / 255f,
+            b = blue * scale,
+            g = green * scale,
+            r = red * scale,
+            vmax = Math.max(r, Math.max(g, b)),
+            vmin = Math.min(r, Math.min(g, b)),
+            diff = vmax - vmin,
+            l = (vmax + vmin) * 0.5f,
+            h = 0, s = 0;
+
+        if (diff > Math.ulp(1f)) {
+            s = l < 0.5f ? diff / (vmax + vmin) : diff / (2 - (vmax + vmin));
+            diff = 60f / diff;
+
+            if (vmax == r)
+                h = (g - b) * diff;
+            else if (vmax == g)
+                h = (b - r) * diff + 120f;
+            else
+                h = (r - g) * diff + 240f;
+
+            if (h < 0)
+                h += 360f;
+        }
+
+        hls[0] = saturate(h * 0.5f);
+        hls[1] = saturate(l * 255f);
+        hls[2] = saturate(s * 255f);
+    }
+
+    private static int saturate(float value) {
+        int rounded = (int)Math.rint(value);
+        return rounded < 0 ? 0 : (rounded > 255 ? 255 : rounded);
+    }
+}
@@ -0,0 +1,461 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.DemandStream;
+import com.mercury1089.vision.FrameMetrics;
+import com.mercury1089.vision.FrameRecorder;
+import com.mercury1089.vision.FrameSource;
+import com.mercury1089.vision.MatPool;
+import com.mercury1089.vision.MotionGate;
+import com.mercury1089.vision.PipelinedVisionThread;
+import com.mercury1089.vision.SinkFrameSource;
+import com.mercury1089.vision.VisionScheduler;
+import com.mercury1089.vision.YuyvFrameSource;
+import edu.wpi.cscore.*;
+import edu.wpi.first.wpilibj.networktables.NetworkTable;
+import edu.wpi.first.wpilibj.tables.ITable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Main runner class.
+ */
+public class Main {
+    private static final Runtime RUNTIME;
+    public static final int
+            FPS = 15,
+            RES_X = 320,
+            RES_Y = 240;
+
+    private static Thread gearVisionThread, highGoalThread;
+
+    private static boolean shutdown = false;
+
+    // The root key for both vision targets
+    private static final String ROOT = "Vision";
+
+    static {
+        // Loads our OpenCV library before anything else.
+        System.loadLibrary("opencv_java310");
+
+        // Initializes a field to access our runtime
+        RUNTIME = Runtime.getRuntime();
+    }
+
+    public static void main(String[] args) {
+        // Probe for camera module driver
+        try {
+            RUNTIME.exec("sudo modprobe bcm2835-v4l2");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // Connect NetworkTables, and get access to the publishing table
+        NetworkTable.setClientMode();
+        // Set your team number here
+        NetworkTable.setTeam(1089);
+        // Initialize the network tables since we aren't doing this in a regular robot class
+        NetworkTable.initialize();
+
+        // The network tables to use for targeting
+        NetworkTable
+            gearVisionTable = NetworkTable.getTable(ROOT + "/gearVision"),
+            highGoalTable = NetworkTable.getTable(ROOT + "/highGoal");
+
+        // All the Mjpeg servers to check out before and after of each feed
+        // They can be found at http://roborio-1089-FRC.local:<port>
+        MjpegServer
+            piRawStream = new MjpegServer("RAW_Pi", 1185),
+            piOutputStream = new MjpegServer("OUTPUT_Pi", 1186),
+            lifeCamRawStream = new MjpegServer("RAW_LifeCam", 1187),
+            lifeCamOutputStream = new MjpegServer("OUTPUT_LifeCam", 1188);
+
+        // The processed feeds are only annotated and streamed while someone is watching,
+        // and then at their own frame rate and scale
+        double
+            streamFps = Double.parseDouble(VisionConfig.getProperty("stream_fps", "7.5")),
+            streamScale = Double.parseDouble(VisionConfig.getProperty("stream_scale", "1"));
+        int
+            streamX = (int)Math.round(RES_X * streamScale),
+            streamY = (int)Math.round(RES_Y * streamScale);
+
+        // CvSources to take in mats with operations
+        CvSource
+            piSource = new CvSource("CvSource_Pi", VideoMode.PixelFormat.kMJPEG, streamX, streamY, FPS),
+            lifeCamSource = new CvSource("CvSource_LifeCam", VideoMode.PixelFormat.kMJPEG, streamX, streamY, FPS);
+
+        DemandStream
+            piStream = new DemandStream(piSource, 1186, streamFps, streamScale),
+            lifeCamStream = new DemandStream(lifeCamSource, 1188, streamFps, streamScale);
+
+        // Our usb cameras
+        UsbCamera
+            piCamera = new UsbCamera("Pi Camera", 1),
+            lifeCam = new UsbCamera("LifeCam 3000", 0);
+
+        // Sinks to get image feed to use for cv processing
+        CvSink
+            piSink = new CvSink("CvSink_Pi"),
+            lifeCamSink = new CvSink("CvSink_LifeCam");
+
+        
+        FilterContourSettings gearFCS = new FilterContourSettings();
+        FilterContourSettings highGoalFCS = new FilterContourSettings();
+
+        TrackingSettings gearTracking = newTrackingSettings();
+        TrackingSettings highGoalTracking = newTrackingSettings();
+
+        PredictionSettings gearPrediction = newPredictionSettings();
+        PredictionSettings highGoalPrediction = newPredictionSettings();
+
+        PairingSettings gearPairing = PairingSettings.forTarget("gearVision");
+        PairingSettings highGoalPairing = PairingSettings.forTarget("highGoal");
+
+        // Pipelines to process our images
+        MercPipeline
+            gearPipeline = new MercPipeline(NetworkTable.getTable("Preferences").getNumberArray("hslThresholdPi", MercPipeline.DEFAULT_THRESHOLD), gearFCS),
+            highGoalPipeline = new MercPipeline(NetworkTable.getTable("Preferences").getNumberArray("hslThresholdLifeCam", MercPipeline.DEFAULT_THRESHOLD), highGoalFCS);
+
+        gearPipeline.updateSettings(settings -> settings.withConfig("gearVision", "hslThresholdPi"));
+        highGoalPipeline.updateSettings(settings -> settings.withConfig("highGoal", "hslThresholdLifeCam"));
+
+        // Grab the gear camera's frames in YUYV and threshold them as they are, if the config asks for it.
+        // The pipelined threads annotate every frame they stream in place, so they always get BGR.
+        String processing = VisionConfig.getProperty("processing", "sequential");
+        boolean pipelined = "pipelined".equals(processing);
+        boolean scheduled = "scheduled".equals(processing);
+        boolean yuyv = "yuyv".equals(VisionConfig.getProperty("capture", "bgr"));
+        if (yuyv && pipelined) {
+            System.out.println("YUYV capture is not done with pipelined processing");
+            yuyv = false;
+        }
+
+        configure(gearPipeline);
+        if (yuyv)
+            gearPipeline.setThresholdEngine(new YuyvThresholdEngine());
+        configure(highGoalPipeline);
+
+        // Any other targets to look for in the gear camera's frames, each with a pipeline of its own.
+        // They use the gear camera's threshold, and the filter, pairing and pose settings under their own names.
+        String fanOut = VisionConfig.getProperty("fanout", "").trim();
+        String[] fanOutTargets = fanOut.isEmpty() ? new String[0] : fanOut.split(",");
+        MercPipeline[] fanOutPipelines = new MercPipeline[fanOutTargets.length];
+
+        for (int i = 0; i < fanOutTargets.length; i++) {
+            fanOutTargets[i] = fanOutTargets[i].trim();
+            fanOutPipelines[i] = new MercPipeline(NetworkTable.getTable("Preferences").getNumberArray("hslThresholdPi", MercPipeline.DEFAULT_THRESHOLD), new FilterContourSettings());
+            String target = fanOutTargets[i];
+            fanOutPipelines[i].updateSettings(settings -> settings.withConfig(target, "hslThresholdPi"));
+            configure(fanOutPipelines[i]);
+            if (yuyv)
+                fanOutPipelines[i].setThresholdEngine(new YuyvThresholdEngine());
+        }
+
+        // Add listeners for values for camera settings, HSL settings and contour filter settings.
+        // Pipeline settings are swapped in whole, so a frame never sees half of an update.
+        NetworkTable.getTable(ROOT + "/gearVision").addTableListener(
+    			(ITable table, String key, Object value, boolean isNew) -> {
+    			    if ("brightness".equals(key))
+    			        piCamera.setBrightness((int)value);
+    			    else if (value instanceof Double)
+    			        gearPipeline.updateSetting(key, (Double)value);
+                }
+		);
+
+        NetworkTable.getTable(ROOT + "/highGoal").addTableListener(
+                (ITable table, String key, Object value, boolean isNew) -> {
+                    if ("brightness".equals(key))
+                        lifeCam.setBrightness((int)value);
+                    else if (value instanceof Double)
+                        highGoalPipeline.updateSetting(key, (Double)value);
+                }
+		);
+
+        // Pick up pipeline settings from vision.properties whenever it is edited.
+        // Every snapshot is built first, so a bad value leaves every pipeline on the old file.
+        VisionConfig.watch(() -> {
+            gearPipeline.settings().withConfig("gearVision", "hslThresholdPi");
+            highGoalPipeline.settings().withConfig("highGoal", "hslThresholdLifeCam");
+            for (int i = 0; i < fanOutTargets.length; i++)
+                fanOutPipelines[i].settings().withConfig(fanOutTargets[i], "hslThresholdPi");
+
+            gearPipeline.updateSettings(settings -> settings.withConfig("gearVision", "hslThresholdPi"));
+            highGoalPipeline.updateSettings(settings -> settings.withConfig("highGoal", "hslThresholdLifeCam"));
+            for (int i = 0; i < fanOutTargets.length; i++) {
+                String target = fanOutTargets[i];
+                fanOutPipelines[i].updateSettings(settings -> settings.withConfig(target, "hslThresholdPi"));
+            }
+        });
+
+        // Change resolutions and framerates of cameras to be consistent.
+        piCamera.setResolution(RES_X, RES_Y);
+        piCamera.setFPS(FPS);
+        piCamera.setBrightness(20);
+        piCamera.getProperty("contrast").set(100);
+        piCamera.getProperty("saturation").set(100);
+        piCamera.getProperty("power_line_frequency").set(2);
+        piCamera.getProperty("auto_exposure").set(1);
+        piCamera.getProperty("exposure_time_absolute").set(20);
+
+        lifeCam.setResolution(RES_X, RES_Y);
+        lifeCam.setFPS(FPS);
+        lifeCam.setBrightness(30);
+        lifeCam.getProperty("contrast").set(100);
+        lifeCam.getProperty("saturation").set(100);
+        lifeCam.getProperty("white_balance_temperature_auto").set(0);
+        lifeCam.getProperty("white_balance_temperature").set(10000);
+        lifeCam.setExposureManual(0);
+
+        // Set the source of the raw feed to their respective cameras
+        // Streaming anything from the camera through cscore would take it away from the YUYV capture
+        if (!yuyv)
+            piRawStream.setSource(piCamera);
+        lifeCamRawStream.setSource(lifeCam);
+
+        // Set sources of image sinks to get feeds from cameras
+        if (!yuyv)
+            piSink.setSource(piCamera);
+        lifeCamSink.setSource(lifeCam);
+
+        // Set sources of Mjpeg outputs to take in processed images
+        piOutputStream.setSource(piSource);
+        lifeCamOutputStream.setSource(lifeCamSource);
+
+        // Time every stage of processing, published under <target>/metrics
+        long metricsPeriod = Long.parseLong(VisionConfig.getProperty("metrics_period", "1000"));
+        FrameMetrics<FrameStage>
+            gearMetrics = new FrameMetrics<>(FrameStage.class, metricsPeriod),
+            highGoalMetrics = new FrameMetrics<>(FrameStage.class, metricsPeriod);
+
+        gearPipeline.setMetrics(gearMetrics);
+        highGoalPipeline.setMetrics(highGoalMetrics);
+
+        // Either put every value separately, or one packed record per changed frame
+        TargetPublisher.Mode publishMode = TargetPublisher.Mode.valueOf(VisionConfig.getProperty("publish_mode", "full").toUpperCase());
+        TargetPublisher
+            gearPublisher = new TargetPublisher(gearVisionTable, publishMode, gearPrediction),
+            highGoalPublisher = new TargetPublisher(highGoalTable, publishMode, highGoalPrediction);
+
+        // Record frames and what was found in them, if the config says where to
+        FrameRecorder
+            gearRecorder = openRecorder("gearVision"),
+            highGoalRecorder = openRecorder("highGoal");
+
+        // Skip processing frames that have not changed, if the config asks for it
+        MotionGate
+            gearGate = newMotionGate(),
+            highGoalGate = newMotionGate();
+
+        // Work out where each target is relative to its camera, if the config asks for it
+        PoseEstimator
+            gearPose = newPoseEstimator("gearVision", "Pi"),
+            highGoalPose = newPoseEstimator("highGoal", "LifeCam");
+
+        // Create threads. The pipelined threads run each stage of processing on its own thread,
+        // and the scheduler runs both cameras on a shared pool instead.
+        VisionScheduler scheduler = null;
+        FrameSource gearSource = yuyv ? new YuyvFrameSource(1, RES_X, RES_Y, FPS) : new SinkFrameSource(piSink);
+
+        if (pipelined) {
+            if (gearRecorder != null || highGoalRecorder != null)
+                System.out.println("Recording is not done with pipelined processing");
+            if (gearGate != null)
+                System.out.println("Frames are not skipped with pipelined processing");
+            if (fanOutTargets.length > 0)
+                System.out.println("Other targets are only looked for in the gear camera's frames with sequential processing");
+
+            gearVisionThread = new PipelinedVisionThread<>(new SinkFrameSource(piSink), piStream, gearPipeline, new TargetStages(gearTracking, gearPrediction, gearPairing, gearVisionTable, gearPublisher, gearMetrics, gearPose), "gear_vision");
+            highGoalThread = new PipelinedVisionThread<>(new SinkFrameSource(lifeCamSink), lifeCamStream, highGoalPipeline, new TargetStages(highGoalTracking, highGoalPrediction, highGoalPairing, highGoalTable, highGoalPublisher, highGoalMetrics, highGoalPose), "high_goal");
+        } else if (scheduled) {
+            if (fanOutTargets.length > 0)
+                System.out.println("Other targets are only looked for in the gear camera's frames with sequential processing");
+
+            // Both cameras share a worker per core, and the gear camera goes first whenever every worker is busy
+            scheduler = new VisionScheduler(Integer.parseInt(VisionConfig.getProperty("workers", String.valueOf(RUNTIME.availableProcessors()))));
+            scheduler.add("gear_vision", gearSource, new FrameProcessor(piStream, gearPipeline, gearTracking, gearPrediction, gearPairing, gearVisionTable, gearPublisher, gearMetrics, gearRecorder, gearGate, gearPose), 0, 1);
+            scheduler.add("high_goal", new SinkFrameSource(lifeCamSink), new FrameProcessor(lifeCamStream, highGoalPipeline, highGoalTracking, highGoalPrediction, highGoalPairing, highGoalTable, highGoalPublisher, highGoalMetrics, highGoalRecorder, highGoalGate, highGoalPose), 0, 0);
+        } else if (fanOutTargets.length > 0) {
+            // Every target of the gear camera shares its frames, and publishes under <gearVision>/<target>
+            List<FanOutThread.Branch> branches = new ArrayList<>();
+            branches.add(new FanOutThread.Branch(gearPipeline, gearTracking, gearPrediction, gearPairing, gearVisionTable, gearPublisher, gearMetrics, gearPose));
+
+            for (int i = 0; i < fanOutTargets.length; i++) {
+                ITable table = gearVisionTable.getSubTable(fanOutTargets[i]);
+                PredictionSettings prediction = newPredictionSettings();
+                FrameMetrics<FrameStage> metrics = new FrameMetrics<>(FrameStage.class, metricsPeriod);
+                fanOutPipelines[i].setMetrics(metrics);
+
+                branches.add(new FanOutThread.Branch(fanOutPipelines[i], newTrackingSettings(), prediction, PairingSettings.forTarget(fanOutTargets[i]), table, new TargetPublisher(table, publishMode, prediction), metrics, newPoseEstimator(fanOutTargets[i], "Pi")));
+            }
+
+            gearVisionThread = new FanOutThread(gearSource, piStream, branches, gearRecorder, gearGate, "gear_vision");
+            highGoalThread = new VisionThread(new SinkFrameSource(lifeCamSink), lifeCamStream, highGoalPipeline, highGoalTracking, highGoalPrediction, highGoalPairing, highGoalTable, highGoalPublisher, highGoalMetrics, highGoalRecorder, highGoalGate, highGoalPose, "high_goal");
+        } else {
+            gearVisionThread = new VisionThread(gearSource, piStream, gearPipeline, gearTracking, gearPrediction, gearPairing, gearVisionTable, gearPublisher, gearMetrics, gearRecorder, gearGate, gearPose, "gear_vision");
+            highGoalThread = new VisionThread(new SinkFrameSource(lifeCamSink), lifeCamStream, highGoalPipeline, highGoalTracking, highGoalPrediction, highGoalPairing, highGoalTable, highGoalPublisher, highGoalMetrics, highGoalRecorder, highGoalGate, highGoalPose, "high_goal");
+        }
+
+        RUNTIME.addShutdownHook(new Thread(() -> {
+            System.out.println("Shutting down...");
+
+            // Free resources
+            // NOTE: I don't actually know if this works
+            piOutputStream.free();
+            lifeCamOutputStream.free();
+
+            piSink.free();
+            lifeCamSink.free();
+
+            piSource.free();
+            lifeCamSource.free();
+
+            piRawStream.free();
+            lifeCamRawStream.free();
+
+            piCamera.free();
+            lifeCam.free();
+
+            // Make sure everything recorded is in the files
+            if (gearRecorder != null)
+                gearRecorder.close();
+            if (highGoalRecorder != null)
+                highGoalRecorder.close();
+
+            // Run a shutdown command only if the shutdown flag was ticked
+            if (shutdown) {
+                try {
+                    RUNTIME.exec("sudo shutdown -t 5");
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }));
+
+        // Start up both threads
+        if (scheduler != null) {
+            scheduler.start();
+        } else {
+            gearVisionThread.start();
+            highGoalThread.start();
+        }
+
+        try {
+            // Put wait methods into a loop to keep the threads from being interrupted
+            // when we don't want them to be.
+            NetworkTable.getTable(ROOT).putBoolean("shutdown", false);
+            while(!shutdown) {
+                Thread.sleep(1000);
+                MatPool.SHARED.publish(NetworkTable.getTable(ROOT + "/memory"));
+                if (gearRecorder != null)
+                    gearRecorder.publish(gearVisionTable.getSubTable("recorder"));
+                if (highGoalRecorder != null)
+                    highGoalRecorder.publish(highGoalTable.getSubTable("recorder"));
+                if (gearGate != null) {
+                    gearGate.publish(gearVisionTable.getSubTable("motion"));
+                    highGoalGate.publish(highGoalTable.getSubTable("motion"));
+                }
+                shutdown = NetworkTable.getTable(ROOT).getBoolean("shutdown", false);
+            }
+
+            // Shutdown the program when we're done
+            System.exit(0);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sets up a pipeline the way the config asks: the engine to threshold with, whether to find blobs
+     * in place of contours, whether to search a smaller copy of each frame first and how many bands to split it into.
+     * The {@link Tuner} sets up its pipelines with this too, so it tunes for the same mask the vision threads make.
+     *
+     * @param pipeline the pipeline to set up
+     */
+    static void configure(MercPipeline pipeline) {
+        pipeline.setThresholdEngine(ThresholdEngine.forName(VisionConfig.getProperty("threshold_engine", "opencv")));
+        pipeline.setBlobExtraction("blobs".equals(VisionConfig.getProperty("extraction", "contours")));
+        pipeline.setPyramidFactor(Integer.parseInt(VisionConfig.getProperty("pyramid", "1")));
+        pipeline.setBands(Integer.parseInt(VisionConfig.getProperty("bands", "1")));
+    }
+
+    /**
+     * Makes the settings for tracking a target, which only searches around the last target once found if tracking is on.
+     *
+     * @return the settings, with tracking off unless the config turns it on
+     */
+    private static TrackingSettings newTrackingSettings() {
+        TrackingSettings settings = new TrackingSettings();
+        settings.enabled = "on".equals(VisionConfig.getProperty("tracking", "off"));
+        return settings;
+    }
+
+    /**
+     * Makes the settings for smoothing a target and predicting where it is now, which is only done if prediction is on.
+     *
+     * @return the settings, with prediction off unless the config turns it on
+     */
+    private static PredictionSettings newPredictionSettings() {
+        PredictionSettings settings = new PredictionSettings();
+        settings.enabled = "on".equals(VisionConfig.getProperty("prediction", "off"));
+        return settings;
+    }
+
+    /**
+     * Makes a gate that skips processing frames that have not changed, if motion_gate is on.
+     * How much has to change is set by motion_threshold and motion_fraction,
+     * and the longest to go without processing a frame by motion_refresh_ms.
+     *
+     * @return the gate, or null if every frame should be processed
+     */
+    private static MotionGate newMotionGate() {
+        if (!"on".equals(VisionConfig.getProperty("motion_gate", "off")))
+            return null;
+
+        return new MotionGate(
+            8,
+            Integer.parseInt(VisionConfig.getProperty("motion_threshold", "10")),
+            Double.parseDouble(VisionConfig.getProperty("motion_fraction", "0.005")),
+            Long.parseLong(VisionConfig.getProperty("motion_refresh_ms", "500"))
+        );
+    }
+
+    /**
+     * Makes an estimator that works out where a target is relative to the camera looking at it, if pose is on.
+     * The camera's intrinsics are read from cameraMatrix&lt;camera&gt; and distortion&lt;camera&gt;.
+     *
+     * @param target the name of the target
+     * @param camera the camera looking at it, either Pi or LifeCam
+     * @return the estimator, or null if only where the target is in the frame should be published
+     */
+    private static PoseEstimator newPoseEstimator(String target, String camera) {
+        if (!"on".equals(VisionConfig.getProperty("pose", "off")))
+            return null;
+
+        return new PoseEstimator(PoseSettings.forTarget(target, camera, RES_X, RES_Y));
+    }
+
+    /**
+     * Opens a recorder for a target in the directory set by record_dir, in a ring file named after the target.
+     * The size of the file is set by record_mb, and the format of the frames by record_format, either jpeg or raw.
+     *
+     * @param name the name of the target
+     * @return the recorder, or null if record_dir is not set or the file could not be opened
+     */
+    private static FrameRecorder openRecorder(String name) {
+        String directory = VisionConfig.getProperty("record_dir", null);
+        if (directory == null)
+            return null;
+
+        long capacity = Long.parseLong(VisionConfig.getProperty("record_mb", "256")) << 20;
+        FrameRecorder.Format format = FrameRecorder.Format.valueOf(VisionConfig.getProperty("record_format", "jpeg").toUpperCase());
+
+        try {
+            return new FrameRecorder(new File(directory, name + ".rec"), capacity, format, name);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
\ No newline at end of file
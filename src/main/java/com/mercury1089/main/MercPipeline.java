@@ -0,0 +1,626 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.FrameMetrics;
+import com.mercury1089.vision.MatPool;
+import com.mercury1089.vision.SharedFrame;
+import com.mercury1089.vision.VisionPipeline;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+* MercPipeline class.
+*
+* <p>An OpenCV pipeline generated by GRIP.
+*
+* @author GRIP
+*/
+public class MercPipeline implements VisionPipeline {
+
+	// Threshold to use when none has been saved: hue min/max, sat min/max, lum min/max
+	static final double[] DEFAULT_THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+	//Outputs
+	// Borrowed from the shared pool, and given back when the next frame is processed
+	private Mat hslThresholdOutput = null;
+	private ArrayList<MatOfPoint> findContoursOutput = new ArrayList<MatOfPoint>();
+	private ArrayList<MatOfPoint> filterContoursOutput = new ArrayList<MatOfPoint>();
+	private final Blobs blobsOutput = new Blobs();
+
+	// Reused between frames so that processing does not allocate them every time
+	private final Mat hierarchy = new Mat();
+	private final Scalar
+		BLACK = new Scalar(0),
+		hslLower = new Scalar(0, 0, 0),
+		hslUpper = new Scalar(0, 0, 0);
+
+	// The part of the frame to search, if only part of it should be searched
+	private final Rect searchWindow = new Rect();
+	private final Point searchOffset = new Point();
+	private boolean useSearchWindow = false;
+	private final WindowView
+		inputWindow = new WindowView(),
+		hlsWindow = new WindowView();
+
+	// Swapped out whole whenever a setting changes, and read once per frame
+	private final AtomicReference<PipelineSettings> settings;
+	// The settings the threshold engine was last given bounds from
+	private PipelineSettings engineSettings = null;
+	private final ContourFilter contourFilter = new ContourFilter();
+	private final BlobExtractor blobExtractor = new BlobExtractor();
+
+	// Whether to find blobs in place of contours
+	private boolean useBlobs = false;
+
+	// How much smaller the frame is that a full frame search looks for targets in first, or 1 to not
+	private int pyramidFactor = 1;
+	private final Mat
+		coarseFrame = new Mat(),
+		coarseMask = new Mat();
+	private final Size coarseSize = new Size();
+	private final Point COARSE_OFFSET = new Point();
+	private final BlobExtractor coarseExtractor = new BlobExtractor();
+	private final Blobs coarseBlobs = new Blobs();
+	// Anything in the small frame could be a target, so nothing is filtered out there
+	private final FilterContourSettings coarseFilter = new FilterContourSettings();
+	// The parts of the full frame to threshold, as left, top, right and bottom
+	private int[] regions = new int[16 * 4];
+	private final Rect region = new Rect();
+	// Views of each region of the frame and the mask, kept for as long as the region stays in the same place
+	private WindowView[]
+		regionInputs = new WindowView[0],
+		regionOutputs = new WindowView[0];
+
+	{
+		coarseFilter.minArea = 0;
+		coarseFilter.maxWidth = coarseFilter.maxHeight = Double.MAX_VALUE;
+		coarseFilter.maxRatio = Double.MAX_VALUE;
+	}
+
+	// Splits each frame into bands processed at once, if set
+	private BandProcessor bandProcessor = null;
+
+	// Used in place of cvtColor and inRange when set
+	private ThresholdEngine thresholdEngine = null;
+
+	// Timing of each step, if it is being measured
+	private FrameMetrics<FrameStage> metrics = null;
+
+	/**
+	 * @param threshold             the HSL threshold: hue min/max, sat min/max, lum min/max
+	 * @param filterContourSettings the settings to filter contours with. They are copied, so they should be changed
+	 *                              with {@link #updateSetting(String, double)} from then on.
+	 */
+	public MercPipeline(double[] threshold, FilterContourSettings filterContourSettings) {
+		settings = new AtomicReference<>(new PipelineSettings(threshold, filterContourSettings));
+	}
+
+	/**
+	 * Updates a value in the HSL threshold or the contour filter based on the key passed in.
+	 * This can be called from any thread; the next frame processed uses the new value.
+	 *
+	 * @param key the name of the value to update, as in {@link PipelineSettings#with(String, double)}
+	 * @param val the value to set it to
+	 */
+	public void updateSetting(String key, double val) {
+		settings.updateAndGet(current -> current.with(key, val));
+	}
+
+	/**
+	 * Changes the settings based on what they are now. This can be called from any thread,
+	 * and a change made by another thread in the meantime is not lost; the next frame processed uses the result.
+	 *
+	 * @param update makes the new settings from the current ones; it may be called more than once
+	 */
+	public void updateSettings(UnaryOperator<PipelineSettings> update) {
+		settings.updateAndGet(update);
+	}
+
+	/**
+	 * Replaces every setting at once. This can be called from any thread; the next frame processed uses them.
+	 *
+	 * @param settings the new settings
+	 */
+	public void setSettings(PipelineSettings settings) {
+		this.settings.set(settings);
+	}
+
+	/**
+	 * @return the settings the next frame will be processed with
+	 */
+	public PipelineSettings settings() {
+		return settings.get();
+	}
+
+	/**
+	 * Sets the engine used to threshold frames.
+	 *
+	 * @param engine the engine to use, or null to use OpenCV's cvtColor and inRange
+	 */
+	public void setThresholdEngine(ThresholdEngine engine) {
+		PipelineSettings current = settings.get();
+
+		if (engine != null)
+			engine.setBounds(current.hue(), current.sat(), current.lum());
+
+		thresholdEngine = engine;
+		engineSettings = current;
+	}
+
+	/**
+	 * Sets whether to find blobs with connected components in place of finding and filtering contours.
+	 * This should be set before the first frame is processed.
+	 *
+	 * @param blobs true to fill {@link #blobsOutput()}, false to fill {@link #filterContoursOutput()}
+	 */
+	public void setBlobExtraction(boolean blobs) {
+		useBlobs = blobs;
+	}
+
+	/**
+	 * @return true if blobs are found in place of contours
+	 */
+	public boolean usesBlobs() {
+		return useBlobs;
+	}
+
+	/**
+	 * Sets whether a search of the full frame finds where targets could be in a smaller copy of it first.
+	 * The copy is thresholded and split into blobs, and then only the parts of the full frame around those blobs
+	 * are thresholded. Everything found is still in the coordinates of the full frame, and is the same as a normal
+	 * search would find, unless a piece of a target is too thin to show up in the copy at all.
+	 * Searches within a search window are not affected, since the window is already small, and neither are YUYV frames.
+	 *
+	 * @param factor how much smaller the copy is across and down: 2 or 4, or 1 to search the full frame directly
+	 * @throws IllegalArgumentException if the factor is not 1, 2 or 4
+	 */
+	public void setPyramidFactor(int factor) {
+		if (factor != 1 && factor != 2 && factor != 4)
+			throw new IllegalArgumentException("pyramid factor must be 1, 2 or 4, got " + factor);
+
+		pyramidFactor = factor;
+	}
+
+	/**
+	 * Sets how many bands to split each frame into, so that thresholding and labeling blobs use more than one core.
+	 * The bands are processed on the common fork/join pool, shared by every pipeline, and give exactly the same
+	 * mask and blobs as processing the frame whole. Contours are still found in the whole mask.
+	 * Frames and search windows too small for that many bands are split into fewer.
+	 * This should be set before the first frame is processed.
+	 *
+	 * @param bands the most bands to split a frame into, or 1 to process it whole
+	 * @throws IllegalArgumentException if there are fewer than 1
+	 */
+	public void setBands(int bands) {
+		if (bands < 1)
+			throw new IllegalArgumentException("bands must be at least 1, got " + bands);
+
+		bandProcessor = bands > 1 ? new BandProcessor(bands) : null;
+	}
+
+	/**
+	 * Sets where to record how long each step takes.
+	 *
+	 * @param metrics the metrics to record into, or null to stop timing
+	 */
+	public void setMetrics(FrameMetrics<FrameStage> metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Limits processing to a window of the frame. Contours are still reported
+	 * in the coordinates of the full frame.
+	 *
+	 * @param x      the left edge of the window
+	 * @param y      the top edge of the window
+	 * @param width  the width of the window
+	 * @param height the height of the window
+	 */
+	public void setSearchWindow(int x, int y, int width, int height) {
+		searchWindow.x = x;
+		searchWindow.y = y;
+		searchWindow.width = width;
+		searchWindow.height = height;
+		useSearchWindow = true;
+	}
+
+	/**
+	 * Goes back to processing the full frame.
+	 */
+	public void clearSearchWindow() {
+		useSearchWindow = false;
+	}
+
+	/**
+	 * @return whether only a window of the frame is being processed
+	 */
+	public boolean hasSearchWindow() {
+		return useSearchWindow;
+	}
+
+	/**
+	 * @return the window of the frame being processed, only valid if {@link #hasSearchWindow()} is true
+	 */
+	public Rect searchWindow() {
+		return searchWindow;
+	}
+
+	/**
+	 * Runs a {@link Mat} through the pipeline and updates the outputs.
+	 * If a search window is set, only that part of the {@code Mat} is processed.
+	 *
+	 * @param input the {@code Mat} to process
+	 */
+	@Override
+	public void process(Mat input) {
+		process(input, null);
+	}
+
+	/**
+	 * Runs a frame shared with other pipelines through the pipeline, using its HLS conversion when thresholding
+	 * with cvtColor and inRange. A search window only uses it if another pipeline already converted the frame,
+	 * since converting just the window is cheaper than converting all of it.
+	 *
+	 * @param frame the frame to process
+	 */
+	@Override
+	public void process(SharedFrame frame) {
+		boolean shareHls = thresholdEngine == null && bandProcessor == null
+			&& (useSearchWindow ? frame.hasHls() : pyramidFactor == 1);
+
+		process(frame.bgr(), shareHls ? frame.hls() : null);
+	}
+
+	/**
+	 * Runs a frame through the pipeline, using its HLS conversion if there is one.
+	 */
+	private void process(Mat input, Mat hls) {
+		// Every step of this frame uses the same settings, even if they change partway through
+		PipelineSettings current = settings.get();
+
+		// Step HSL_Threshold0:
+		Mat hslThresholdInput = useSearchWindow ? inputWindow.of(input, searchWindow) : input;
+		Mat hslConverted = hls != null && useSearchWindow ? hlsWindow.of(hls, searchWindow) : hls;
+
+		long start = startTiming();
+
+		// The mask is borrowed at the size of whatever is searched, so a search window that changes size
+		// keeps using the same buffer from the pool instead of reallocating it
+		if (hslThresholdOutput != null)
+			MatPool.SHARED.giveBack(hslThresholdOutput);
+		hslThresholdOutput = MatPool.SHARED.borrow(hslThresholdInput.rows(), hslThresholdInput.cols(), CvType.CV_8UC1);
+
+		// Building the engine's table is slow, so it is only done when the bounds themselves change,
+		// not for a change to the filter or a reload that sets the same threshold
+		if (thresholdEngine != null && current != engineSettings) {
+			if (!current.sameThreshold(engineSettings))
+				thresholdEngine.setBounds(current.hue(), current.sat(), current.lum());
+			engineSettings = current;
+		}
+
+		boolean
+			banded = bandProcessor != null && bandProcessor.bandsFor(hslThresholdInput.rows()) > 1,
+			labeled = false;
+
+		// Picking every nth pixel of a YUYV frame would split up the pairs that share chroma
+		if (pyramidFactor > 1 && !useSearchWindow && input.channels() == 3) {
+			start = pyramidThreshold(input, current, hslThresholdOutput, start);
+		} else if (banded) {
+			// Label each band while it is still in the cache, if blobs are wanted
+			bandProcessor.process(hslThresholdInput, hslThresholdOutput, thresholdEngine, current, useBlobs);
+			start = recordTiming(useBlobs ? FrameStage.BANDS : FrameStage.THRESHOLD, start);
+			labeled = useBlobs;
+		} else if (thresholdEngine != null) {
+			thresholdEngine.threshold(hslThresholdInput, hslThresholdOutput);
+			start = recordTiming(FrameStage.THRESHOLD, start);
+		} else {
+			start = hslThreshold(hslThresholdInput, hslConverted, current.hue(), current.sat(), current.lum(), hslThresholdOutput, start);
+		}
+
+		if (useSearchWindow) {
+			searchOffset.x = searchWindow.x;
+			searchOffset.y = searchWindow.y;
+		} else {
+			searchOffset.x = 0;
+			searchOffset.y = 0;
+		}
+
+		if (useBlobs && banded) {
+			if (!labeled) {
+				bandProcessor.process(null, hslThresholdOutput, null, current, true);
+				start = recordTiming(FrameStage.BANDS, start);
+			}
+
+			bandProcessor.merge(searchOffset, current.filterSettings(), blobsOutput);
+			recordTiming(FrameStage.LABEL, start);
+			return;
+		}
+
+		if (useBlobs) {
+			blobExtractor.extract(hslThresholdOutput, searchOffset, current.filterSettings(), blobsOutput);
+			recordTiming(FrameStage.LABEL, start);
+			return;
+		}
+
+		// Step Find_Contours0:
+		Mat findContoursInput = hslThresholdOutput;
+		boolean findContoursExternalOnly = false;
+		findContours(findContoursInput, findContoursExternalOnly, searchOffset, findContoursOutput);
+		start = recordTiming(FrameStage.FIND_CONTOURS, start);
+
+		// Step Filter_Contours0:
+		ArrayList<MatOfPoint> filterContoursContours = findContoursOutput;
+		contourFilter.filter(filterContoursContours, current.filterSettings(), filterContoursOutput);
+		recordTiming(FrameStage.FILTER, start);
+	}
+
+	/**
+	 * @return the current time if steps are being timed
+	 */
+	private long startTiming() {
+		return metrics == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Records the time a step took if steps are being timed.
+	 *
+	 * @return the current time, to start timing the next step from
+	 */
+	private long recordTiming(FrameStage stage, long start) {
+		return metrics == null ? 0 : metrics.recordSince(stage, start);
+	}
+
+	/**
+	 * This method is a generated getter for the output of a HSL_Threshold.
+	 * @return Mat output from HSL_Threshold.
+	 */
+	public Mat hslThresholdOutput() {
+		return hslThresholdOutput;
+	}
+
+	/**
+	 * This method is a generated getter for the output of a Find_Contours.
+	 * @return ArrayList<MatOfPoint> output from Find_Contours.
+	 */
+	public ArrayList<MatOfPoint> findContoursOutput() {
+		return findContoursOutput;
+	}
+
+	/**
+	 * This method is a generated getter for the output of a Filter_Contours.
+	 * @return ArrayList<MatOfPoint> output from Filter_Contours.
+	 */
+	public ArrayList<MatOfPoint> filterContoursOutput() {
+		return filterContoursOutput;
+	}
+
+	/**
+	 * @return the blobs found in the last frame, if blobs are being found in place of contours
+	 */
+	public Blobs blobsOutput() {
+		return blobsOutput;
+	}
+
+	/**
+	 * Segment an image based on hue, saturation, and luminance ranges.
+	 *
+	 * @param input The image on which to perform the HSL threshold.
+	 * @param hls   The image already converted to HLS, or null to convert it.
+	 * @param hue   The min and max hue
+	 * @param sat   The min and max saturation
+	 * @param lum   The min and max luminance
+	 * @param out   The image in which to store the output.
+	 * @param start The time the step started, for timing.
+	 * @return The time the step ended, for timing.
+	 */
+	private long hslThreshold(Mat input, Mat hls, double[] hue, double[] sat, double[] lum,
+		Mat out, long start) {
+		hslLower.val[0] = hue[0];
+		hslLower.val[1] = lum[0];
+		hslLower.val[2] = sat[0];
+		hslUpper.val[0] = hue[1];
+		hslUpper.val[1] = lum[1];
+		hslUpper.val[2] = sat[1];
+
+		if (hls != null) {
+			Core.inRange(hls, hslLower, hslUpper, out);
+			return recordTiming(FrameStage.THRESHOLD, start);
+		}
+
+		// The converted frame is only needed until it is thresholded, so it goes straight back to the pool
+		Mat hslConvertOutput = MatPool.SHARED.borrow(input.rows(), input.cols(), CvType.CV_8UC3);
+		Imgproc.cvtColor(input, hslConvertOutput, Imgproc.COLOR_BGR2HLS);
+		start = recordTiming(FrameStage.CONVERT, start);
+		Core.inRange(hslConvertOutput, hslLower, hslUpper, out);
+		MatPool.SHARED.giveBack(hslConvertOutput);
+		return recordTiming(FrameStage.THRESHOLD, start);
+	}
+
+	/**
+	 * Thresholds a frame by finding where targets could be in a smaller copy of it, then thresholding
+	 * only around them at full resolution. Everything else in the mask is left black.
+	 * The copy is made by picking every nth pixel, not averaging, so the colors of the pixels picked are exact
+	 * and thin pieces of a target are not blended into the background.
+	 *
+	 * @param input   the full frame
+	 * @param current the settings of this frame
+	 * @param out     the full size mask to store the result in
+	 * @param start   the time the step started, for timing
+	 * @return the time the step ended, for timing
+	 */
+	private long pyramidThreshold(Mat input, PipelineSettings current, Mat out, long start) {
+		int
+			factor = pyramidFactor,
+			cols = input.cols(),
+			rows = input.rows();
+
+		coarseSize.width = Math.max(1, cols / factor);
+		coarseSize.height = Math.max(1, rows / factor);
+		Imgproc.resize(input, coarseFrame, coarseSize, 0, 0, Imgproc.INTER_NEAREST);
+		threshold(coarseFrame, current, coarseMask);
+		coarseExtractor.extract(coarseMask, COARSE_OFFSET, coarseFilter, coarseBlobs);
+		start = recordTiming(FrameStage.COARSE, start);
+
+		FilterContourSettings filter = current.filterSettings();
+		int count = 0;
+
+		for (int i = 0; i < coarseBlobs.count; i++) {
+			int
+				x = coarseBlobs.x[i],
+				y = coarseBlobs.y[i],
+				width = coarseBlobs.width[i],
+				height = coarseBlobs.height[i];
+
+			// A piece of a target can stick out past the pixels picked by up to a factor on every side.
+			// Leave out anything that could not be a target whatever it looks like at full resolution.
+			int
+				left = Math.max(0, (x - 1) * factor),
+				top = Math.max(0, (y - 1) * factor),
+				right = Math.min(cols, (x + width + 1) * factor),
+				bottom = Math.min(rows, (y + height + 1) * factor);
+
+			if ((double)(right - left) * (bottom - top) < filter.minArea)
+				continue;
+			if ((width - 1) * factor + 1 > filter.maxWidth || (height - 1) * factor + 1 > filter.maxHeight)
+				continue;
+
+			if (regions.length < (count + 1) * 4)
+				regions = Arrays.copyOf(regions, regions.length * 2);
+
+			regions[count * 4] = left;
+			regions[count * 4 + 1] = top;
+			regions[count * 4 + 2] = right;
+			regions[count * 4 + 3] = bottom;
+			count++;
+		}
+
+		count = mergeRegions(count);
+
+		// Regions do not overlap, so every pixel is thresholded at most once
+		out.setTo(BLACK);
+
+		if (regionInputs.length < count) {
+			int length = regionInputs.length;
+			regionInputs = Arrays.copyOf(regionInputs, count);
+			regionOutputs = Arrays.copyOf(regionOutputs, count);
+
+			for (int i = length; i < count; i++) {
+				regionInputs[i] = new WindowView();
+				regionOutputs[i] = new WindowView();
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			region.x = regions[i * 4];
+			region.y = regions[i * 4 + 1];
+			region.width = regions[i * 4 + 2] - region.x;
+			region.height = regions[i * 4 + 3] - region.y;
+
+			Mat regionInput = regionInputs[i].of(input, region);
+			Mat regionMask = MatPool.SHARED.borrow(region.height, region.width, CvType.CV_8UC1);
+			Mat regionOutput = regionOutputs[i].of(out, region);
+
+			threshold(regionInput, current, regionMask);
+			regionMask.copyTo(regionOutput);
+
+			MatPool.SHARED.giveBack(regionMask);
+		}
+
+		return recordTiming(FrameStage.THRESHOLD, start);
+	}
+
+	/**
+	 * Merges regions that overlap or touch until none do, so that nothing is thresholded twice
+	 * and a target that spans two regions is still found in one piece.
+	 *
+	 * @param count the number of regions
+	 * @return the number of regions left
+	 */
+	private int mergeRegions(int count) {
+		boolean merged = true;
+
+		while (merged) {
+			merged = false;
+
+			for (int i = 0; i < count; i++) {
+				for (int j = i + 1; j < count; j++) {
+					int a = i * 4, b = j * 4;
+
+					if (regions[a] > regions[b + 2] || regions[b] > regions[a + 2]
+						|| regions[a + 1] > regions[b + 3] || regions[b + 1] > regions[a + 3])
+						continue;
+
+					regions[a] = Math.min(regions[a], regions[b]);
+					regions[a + 1] = Math.min(regions[a + 1], regions[b + 1]);
+					regions[a + 2] = Math.max(regions[a + 2], regions[b + 2]);
+					regions[a + 3] = Math.max(regions[a + 3], regions[b + 3]);
+
+					// Move the last region into the one merged away
+					count--;
+					System.arraycopy(regions, count * 4, regions, b, 4);
+					j--;
+					merged = true;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Thresholds a frame with whatever engine is set, without timing it.
+	 */
+	private void threshold(Mat input, PipelineSettings current, Mat out) {
+		if (thresholdEngine != null) {
+			thresholdEngine.threshold(input, out);
+			return;
+		}
+
+		double[]
+			hue = current.hue(),
+			sat = current.sat(),
+			lum = current.lum();
+
+		hslLower.val[0] = hue[0];
+		hslLower.val[1] = lum[0];
+		hslLower.val[2] = sat[0];
+		hslUpper.val[0] = hue[1];
+		hslUpper.val[1] = lum[1];
+		hslUpper.val[2] = sat[1];
+
+		Mat converted = MatPool.SHARED.borrow(input.rows(), input.cols(), CvType.CV_8UC3);
+		Imgproc.cvtColor(input, converted, Imgproc.COLOR_BGR2HLS);
+		Core.inRange(converted, hslLower, hslUpper, out);
+		MatPool.SHARED.giveBack(converted);
+	}
+
+	/**
+	 * Sets the values of pixels in a binary image to their distance to the nearest black pixel.
+	 *
+	 * @param input        the image on which to perform the Distance Transform.
+	 * @param externalOnly
+	 * @param offset       the offset to add to every contour point
+	 * @param contours     the {@link List} to store the contours in.
+	 *                     The contours from the last call are released first.
+	 */
+	private void findContours(Mat input, boolean externalOnly, Point offset, List<MatOfPoint> contours) {
+		for (int i = 0; i < contours.size(); i++)
+			contours.get(i).release();
+		contours.clear();
+		int mode;
+		if (externalOnly) {
+			mode = Imgproc.RETR_EXTERNAL;
+		}
+		else {
+			mode = Imgproc.RETR_LIST;
+		}
+		int method = Imgproc.CHAIN_APPROX_SIMPLE;
+		Imgproc.findContours(input, contours, hierarchy, mode, method, offset);
+	}
+
+}
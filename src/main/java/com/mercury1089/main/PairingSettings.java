@@ -0,0 +1,73 @@
+package com.mercury1089.main;
+
+/**
+ * This class encapsulates the expected geometry of the two pieces of a target, used to score every pair of
+ * candidates when picking out the target. Ratios are scored in log space, so being off by half is as bad
+ * as being off by double, and each tolerance is how far off counts as one standard deviation.
+ * This should be used on a per-pipeline basis.
+ */
+public class PairingSettings {
+	// Whether to score pairs on their geometry, or just pair up the two largest candidates
+	public boolean scored = true;
+	// Whether the pieces are stacked top and bottom, rather than side by side
+	public boolean stacked = false;
+	// Distance between the centers of the pieces, along the way they are lined up, over the height of the first piece
+	public double spacing = 1.65;
+	public double spacingTolerance = 0.25;
+	// Area of the second piece over the area of the first
+	public double sizeRatio = 1;
+	public double sizeTolerance = 0.5;
+	// Offset between the centers of the pieces, across the way they are lined up, over the first piece's size that way
+	public double alignmentTolerance = 0.25;
+	// Width over height of the first and second piece
+	public double aspect1 = 0.4;
+	public double aspect2 = 0.4;
+	public double aspectTolerance = 0.5;
+	// Lowest confidence, from 0 to 1, for a pair to count as the target
+	public double minConfidence = 0.1;
+
+	/**
+	 * Makes settings for the geometry of a target: two 2" by 5" strips side by side,
+	 * 8.25" apart, for gearVision and any other target, or a 4" band stacked 7" above a 2" band for highGoal.
+	 * Any of it can be changed in vision.properties under the name of the target, e.g. {@code retroTape.spacing},
+	 * with stacked as true or false. Pairs are only scored if pairing in vision.properties is scored,
+	 * the default, rather than largest.
+	 *
+	 * @param target the name of the target, as in its table
+	 * @return the settings for the target
+	 * @throws IllegalArgumentException if a value in the file is not a number
+	 */
+	public static PairingSettings forTarget(String target) {
+		PairingSettings settings = new PairingSettings();
+		settings.scored = !"largest".equals(VisionConfig.getProperty("pairing", "scored"));
+
+		switch (target) {
+			case "gearVision":
+				break;
+			case "highGoal":
+				settings.stacked = true;
+				settings.spacing = 1.75;
+				settings.sizeRatio = 0.5;
+				// The bands wrap around the boiler, so they look wider the closer they are
+				settings.aspect1 = 5;
+				settings.aspect2 = 10;
+				break;
+		}
+
+		String stacked = VisionConfig.getProperty(target + ".stacked", null);
+		if (stacked != null)
+			settings.stacked = Boolean.parseBoolean(stacked.trim());
+
+		settings.spacing = VisionConfig.getNumber(target + ".spacing", settings.spacing);
+		settings.spacingTolerance = VisionConfig.getNumber(target + ".spacingTolerance", settings.spacingTolerance);
+		settings.sizeRatio = VisionConfig.getNumber(target + ".sizeRatio", settings.sizeRatio);
+		settings.sizeTolerance = VisionConfig.getNumber(target + ".sizeTolerance", settings.sizeTolerance);
+		settings.alignmentTolerance = VisionConfig.getNumber(target + ".alignmentTolerance", settings.alignmentTolerance);
+		settings.aspect1 = VisionConfig.getNumber(target + ".aspect1", settings.aspect1);
+		settings.aspect2 = VisionConfig.getNumber(target + ".aspect2", settings.aspect2);
+		settings.aspectTolerance = VisionConfig.getNumber(target + ".aspectTolerance", settings.aspectTolerance);
+		settings.minConfidence = VisionConfig.getNumber(target + ".minConfidence", settings.minConfidence);
+
+		return settings;
+	}
+}
@@ -0,0 +1,175 @@
+package com.mercury1089.main;
+
+import java.util.Arrays;
+
+/**
+ * This class is an immutable snapshot of everything a {@link MercPipeline} is tuned with: the HSL threshold
+ * and the contour filter. Changing a value makes a new snapshot, so a frame always uses a whole set of
+ * settings, never one that is halfway through being changed.
+ * The arrays and filter settings inside are never handed out to be changed.
+ */
+public final class PipelineSettings {
+	// Min and max of each, in the same ranges as OpenCV's HLS
+	private final double[] HUE, SAT, LUM;
+	private final FilterContourSettings FILTER;
+
+	/**
+	 * @param threshold the HSL threshold: hue min/max, sat min/max, lum min/max
+	 * @param filter    the settings to filter contours with. They are copied, so changing them later has no effect.
+	 */
+	public PipelineSettings(double[] threshold, FilterContourSettings filter) {
+		this(
+			new double[] {threshold[0], threshold[1]},
+			new double[] {threshold[2], threshold[3]},
+			new double[] {threshold[4], threshold[5]},
+			filter.copy()
+		);
+	}
+
+	private PipelineSettings(double[] hue, double[] sat, double[] lum, FilterContourSettings filter) {
+		HUE = hue;
+		SAT = sat;
+		LUM = lum;
+		FILTER = filter;
+	}
+
+	/**
+	 * @return a copy of the HSL threshold: hue min/max, sat min/max, lum min/max
+	 */
+	public double[] threshold() {
+		return new double[] {HUE[0], HUE[1], SAT[0], SAT[1], LUM[0], LUM[1]};
+	}
+
+	/**
+	 * @param other the settings to compare with
+	 * @return true if both have the same HSL threshold, whatever their filters are
+	 */
+	boolean sameThreshold(PipelineSettings other) {
+		return (HUE == other.HUE || Arrays.equals(HUE, other.HUE))
+			&& (SAT == other.SAT || Arrays.equals(SAT, other.SAT))
+			&& (LUM == other.LUM || Arrays.equals(LUM, other.LUM));
+	}
+
+	/**
+	 * @return a copy of the settings to filter contours with
+	 */
+	public FilterContourSettings filter() {
+		return FILTER.copy();
+	}
+
+	// The values themselves, for the pipeline. These must not be changed.
+
+	double[] hue() {
+		return HUE;
+	}
+
+	double[] sat() {
+		return SAT;
+	}
+
+	double[] lum() {
+		return LUM;
+	}
+
+	FilterContourSettings filterSettings() {
+		return FILTER;
+	}
+
+	/**
+	 * Makes a snapshot with one value changed. The keys are the HSL bounds, hueMin through lumMax,
+	 * and the fields of {@link FilterContourSettings}, with minSolidity and maxSolidity for the solidity.
+	 *
+	 * @param key   the name of the value to change
+	 * @param value the value to change it to
+	 * @return the new snapshot, or this one if the key is not a setting
+	 */
+	public PipelineSettings with(String key, double value) {
+		// Nothing in a snapshot is ever changed, so the new one shares everything but the array or filter that changes
+		switch (key) {
+			case "hueMin": return new PipelineSettings(with(HUE, 0, value), SAT, LUM, FILTER);
+			case "hueMax": return new PipelineSettings(with(HUE, 1, value), SAT, LUM, FILTER);
+			case "satMin": return new PipelineSettings(HUE, with(SAT, 0, value), LUM, FILTER);
+			case "satMax": return new PipelineSettings(HUE, with(SAT, 1, value), LUM, FILTER);
+			case "lumMin": return new PipelineSettings(HUE, SAT, with(LUM, 0, value), FILTER);
+			case "lumMax": return new PipelineSettings(HUE, SAT, with(LUM, 1, value), FILTER);
+			case "minArea":
+			case "minPerimeter":
+			case "minWidth":
+			case "maxWidth":
+			case "minHeight":
+			case "maxHeight":
+			case "minSolidity":
+			case "maxSolidity":
+			case "minVerts":
+			case "maxVerts":
+			case "minRatio":
+			case "maxRatio":
+				return new PipelineSettings(HUE, SAT, LUM, filterWith(key, value));
+			default:
+				return this;
+		}
+	}
+
+	private static double[] with(double[] bounds, int index, double value) {
+		double[] copy = bounds.clone();
+		copy[index] = value;
+		return copy;
+	}
+
+	/**
+	 * @param key one of the keys of the filter settings
+	 * @return a copy of the filter settings with that value changed
+	 */
+	private FilterContourSettings filterWith(String key, double value) {
+		FilterContourSettings filter = FILTER.copy();
+
+		switch (key) {
+			case "minArea": filter.minArea = value; break;
+			case "minPerimeter": filter.minPerimeter = value; break;
+			case "minWidth": filter.minWidth = value; break;
+			case "maxWidth": filter.maxWidth = value; break;
+			case "minHeight": filter.minHeight = value; break;
+			case "maxHeight": filter.maxHeight = value; break;
+			case "minSolidity": filter.solidity[0] = value; break;
+			case "maxSolidity": filter.solidity[1] = value; break;
+			case "minVerts": filter.minVerts = value; break;
+			case "maxVerts": filter.maxVerts = value; break;
+			case "minRatio": filter.minRatio = value; break;
+			case "maxRatio": filter.maxRatio = value; break;
+		}
+
+		return filter;
+	}
+
+	/**
+	 * Makes a snapshot with whatever vision.properties sets for a pipeline. The threshold is read as a comma separated
+	 * list under the threshold key, and any other setting under the name of the target, e.g. {@code gearVision.minArea}.
+	 *
+	 * @param target       the name of the target, as in its table
+	 * @param thresholdKey the key of the threshold, as in the robot's preferences
+	 * @return the new snapshot, with anything that is not in the file the same as this one
+	 * @throws IllegalArgumentException if a value in the file is not a number
+	 */
+	public PipelineSettings withConfig(String target, String thresholdKey) {
+		PipelineSettings settings = this;
+
+		double[] threshold = VisionConfig.getNumbers(thresholdKey);
+		if (threshold != null) {
+			if (threshold.length != 6)
+				throw new IllegalArgumentException(thresholdKey + " needs 6 values, got " + threshold.length);
+
+			settings = new PipelineSettings(threshold, FILTER);
+		}
+
+		for (String key : new String[] {
+			"minArea", "minPerimeter", "minWidth", "maxWidth", "minHeight", "maxHeight",
+			"minSolidity", "maxSolidity", "minVerts", "maxVerts", "minRatio", "maxRatio"
+		}) {
+			String value = VisionConfig.getProperty(target + "." + key, null);
+			if (value != null)
+				settings = settings.with(key, Double.parseDouble(value.trim()));
+		}
+
+		return settings;
+	}
+}
@@ -0,0 +1,142 @@
+package com.mercury1089.main;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatOfPoint3f;
+
+/**
+ * This class works out where a target is relative to the camera from the corners of the two rectangles found for it,
+ * by solving for the pose that lines up the target's real geometry with them through the camera's intrinsics.
+ * Each solve starts from the last frame's pose, so it only has a little way to go.
+ * The pose is forgotten whenever the target is lost or a solve comes out behind the camera.
+ */
+public class PoseEstimator {
+    private final PoseSettings SETTINGS;
+
+    // The corners of both pieces, clockwise from the top left, around the point halfway between their centers
+    private final MatOfPoint3f OBJECT = new MatOfPoint3f();
+    private final Mat CAMERA_MATRIX = new Mat(3, 3, CvType.CV_64F);
+    private final MatOfDouble DISTORTION;
+
+    // Reused between frames. The rotation and translation are also the starting point of the next solve.
+    private final MatOfPoint2f image = new MatOfPoint2f();
+    private final float[] corners = new float[16];
+    private final Mat
+        rvec = new Mat(),
+        tvec = new Mat(),
+        rotation = new Mat();
+    private final double[]
+        r = new double[9],
+        t = new double[3];
+    private boolean hasPose = false;
+
+    public PoseEstimator(PoseSettings settings) {
+        SETTINGS = settings;
+
+        double[] k = settings.cameraMatrix;
+        CAMERA_MATRIX.put(0, 0,
+            k[0], 0, k[2],
+            0, k[1], k[3],
+            0, 0, 1);
+        DISTORTION = new MatOfDouble(settings.distortion);
+
+        double
+            x1 = -settings.offsetX / 2,
+            y1 = -settings.offsetY / 2,
+            x2 = settings.offsetX / 2,
+            y2 = settings.offsetY / 2;
+
+        OBJECT.create(8, 1, CvType.CV_32FC3);
+        OBJECT.put(0, 0, toFloats(
+            x1 - settings.width1 / 2, y1 - settings.height1 / 2, 0,
+            x1 + settings.width1 / 2, y1 - settings.height1 / 2, 0,
+            x1 + settings.width1 / 2, y1 + settings.height1 / 2, 0,
+            x1 - settings.width1 / 2, y1 + settings.height1 / 2, 0,
+            x2 - settings.width2 / 2, y2 - settings.height2 / 2, 0,
+            x2 + settings.width2 / 2, y2 - settings.height2 / 2, 0,
+            x2 + settings.width2 / 2, y2 + settings.height2 / 2, 0,
+            x2 - settings.width2 / 2, y2 + settings.height2 / 2, 0));
+
+        image.create(8, 1, CvType.CV_32FC2);
+    }
+
+    /**
+     * Solves for the pose of the target found in a frame, and fills in the pose of the result.
+     * This has to be called after the result is found, since finding it clears the pose.
+     *
+     * @param result the target found in the frame
+     */
+    public void solve(TargetResult result) {
+        if (!result.seeTarget) {
+            hasPose = false;
+            return;
+        }
+
+        setCorners(0, result.centerTarget1, result.boundsTarget1);
+        setCorners(8, result.centerTarget2, result.boundsTarget2);
+        image.put(0, 0, corners);
+
+        boolean guess = hasPose && SETTINGS.warmStart;
+        hasPose = Calib3d.solvePnP(OBJECT, image, CAMERA_MATRIX, DISTORTION, rvec, tvec, guess, Calib3d.SOLVEPNP_ITERATIVE);
+        if (!hasPose)
+            return;
+
+        tvec.get(0, 0, t);
+
+        // A flipped solution puts the target behind the camera, and would only pull the next solve the wrong way
+        if (!(t[2] > 0)) {
+            hasPose = false;
+            return;
+        }
+
+        Calib3d.Rodrigues(rvec, rotation);
+        rotation.get(0, 0, r);
+
+        // Distance across the floor, the angle to turn to face the target,
+        // and how far the target is turned away, positive when its right side is farther
+        result.pose[TargetResult.DISTANCE] = Math.hypot(t[0], t[2]);
+        result.pose[TargetResult.YAW] = Math.toDegrees(Math.atan2(t[0], t[2]));
+        result.pose[TargetResult.SKEW] = Math.toDegrees(Math.atan2(r[6], r[0]));
+    }
+
+    /**
+     * Frees the native memory used by the solver.
+     */
+    public void release() {
+        OBJECT.release();
+        CAMERA_MATRIX.release();
+        DISTORTION.release();
+        image.release();
+        rvec.release();
+        tvec.release();
+        rotation.release();
+    }
+
+    private void setCorners(int offset, double[] center, double[] bounds) {
+        float
+            left = (float)(center[0] - bounds[0] / 2),
+            top = (float)(center[1] - bounds[1] / 2),
+            right = (float)(center[0] + bounds[0] / 2),
+            bottom = (float)(center[1] + bounds[1] / 2);
+
+        corners[offset] = left;
+        corners[offset + 1] = top;
+        corners[offset + 2] = right;
+        corners[offset + 3] = top;
+        corners[offset + 4] = right;
+        corners[offset + 5] = bottom;
+        corners[offset + 6] = left;
+        corners[offset + 7] = bottom;
+    }
+
+    private static float[] toFloats(double... values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++)
+            floats[i] = (float)values[i];
+
+        return floats;
+    }
+}
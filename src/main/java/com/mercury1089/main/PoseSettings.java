@@ -0,0 +1,94 @@
+package com.mercury1089.main;
+
+/**
+ * This class encapsulates the size of the two pieces of a target in the real world, and the intrinsics of the camera
+ * looking at it, used to work out where the target is relative to the camera.
+ * Lengths are in inches, and y goes down, as in the image.
+ * This should be used on a per-pipeline basis.
+ */
+public class PoseSettings {
+	// Focal lengths and optical center of the camera, in pixels at the capture resolution: fx, fy, cx, cy
+	public double[] cameraMatrix = {280, 280, 160, 120};
+	// Lens distortion coefficients: k1, k2, p1, p2 and optionally k3
+	public double[] distortion = {0, 0, 0, 0, 0};
+	// Width and height of the first (left or top) piece and the second piece
+	public double width1 = 2, height1 = 5;
+	public double width2 = 2, height2 = 5;
+	// Offset from the center of the first piece to the center of the second
+	public double offsetX = 8.25, offsetY = 0;
+	// Whether to start each solve from the last frame's pose. Off for frames that are not in sequence.
+	public boolean warmStart = true;
+
+	/**
+	 * Makes settings for one of the targets seen by one of the cameras. The camera's intrinsics are read from
+	 * cameraMatrix&lt;camera&gt; and distortion&lt;camera&gt; in vision.properties, as calibrated at the capture resolution.
+	 * Without them, the focal length is worked out from the camera's field of view, with no distortion.
+	 * Targets other than the two have the gear target's size, and any target's size can be changed in vision.properties
+	 * under its name, e.g. {@code retroTape.width1} or {@code retroTape.offsetX}.
+	 *
+	 * @param target the name of the target, as in its table
+	 * @param camera the camera looking at it, either Pi or LifeCam, as in its threshold key
+	 * @param width  the width frames are captured at
+	 * @param height the height frames are captured at
+	 * @return the settings for the target
+	 * @throws IllegalArgumentException if the camera is not one of the two, a value in the file is not a number,
+	 *                                  or the camera's intrinsics are the wrong length
+	 */
+	public static PoseSettings forTarget(String target, String camera, int width, int height) {
+		PoseSettings settings = new PoseSettings();
+
+		switch (target) {
+			case "gearVision":
+				break;
+			case "highGoal":
+				// The bands wrap around the boiler, so they are as wide as it is across
+				settings.width1 = settings.width2 = 15;
+				settings.height1 = 4;
+				settings.height2 = 2;
+				settings.offsetX = 0;
+				settings.offsetY = 7;
+				break;
+		}
+
+		settings.width1 = VisionConfig.getNumber(target + ".width1", settings.width1);
+		settings.height1 = VisionConfig.getNumber(target + ".height1", settings.height1);
+		settings.width2 = VisionConfig.getNumber(target + ".width2", settings.width2);
+		settings.height2 = VisionConfig.getNumber(target + ".height2", settings.height2);
+		settings.offsetX = VisionConfig.getNumber(target + ".offsetX", settings.offsetX);
+		settings.offsetY = VisionConfig.getNumber(target + ".offsetY", settings.offsetY);
+
+		// Horizontal field of view of the camera, in degrees
+		double fov;
+		switch (camera) {
+			case "Pi":
+				fov = 53.5;
+				break;
+			case "LifeCam":
+				fov = 57.2;
+				break;
+			default:
+				throw new IllegalArgumentException("No camera named " + camera);
+		}
+
+		double focal = width / 2.0 / Math.tan(Math.toRadians(fov / 2));
+		settings.cameraMatrix = new double[] {focal, focal, width / 2.0, height / 2.0};
+
+		double[] cameraMatrix = VisionConfig.getNumbers("cameraMatrix" + camera);
+		if (cameraMatrix != null) {
+			if (cameraMatrix.length != 4)
+				throw new IllegalArgumentException("cameraMatrix" + camera + " needs 4 values, got " + cameraMatrix.length);
+
+			settings.cameraMatrix = cameraMatrix;
+		}
+
+		double[] distortion = VisionConfig.getNumbers("distortion" + camera);
+		if (distortion != null) {
+			if (distortion.length != 4 && distortion.length != 5)
+				throw new IllegalArgumentException("distortion" + camera + " needs 4 or 5 values, got " + distortion.length);
+
+			settings.distortion = distortion;
+		}
+
+		return settings;
+	}
+}
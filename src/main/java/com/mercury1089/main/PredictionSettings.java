@@ -0,0 +1,18 @@
+package com.mercury1089.main;
+
+/**
+ * This class encapsulates all the settings used when smoothing and predicting the motion of a target.
+ * This should be used on a per-pipeline basis.
+ */
+public class PredictionSettings {
+	// Whether to filter the target and predict where it is now
+	public boolean enabled = false;
+	// Frames in a row without a target that the track coasts through before it is dropped
+	public int maxCoast = 2;
+	// How much the target can speed up or slow down, in pixels per second squared. Higher follows faster but smooths less.
+	public double processNoise = 500;
+	// How far off a single measurement can be, in pixels
+	public double measurementNoise = 2;
+	// Time from the camera capturing a frame to it being grabbed, in milliseconds, added to the age of every value
+	public double captureLatency = 0;
+}
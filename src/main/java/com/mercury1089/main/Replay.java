@@ -0,0 +1,345 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.FrameSource;
+import com.mercury1089.vision.ImageDirectorySource;
+import com.mercury1089.vision.MotionGate;
+import com.mercury1089.vision.RecordingSource;
+import com.mercury1089.vision.SharedFrame;
+import com.mercury1089.vision.VideoFileSource;
+import com.mercury1089.vision.VisionScheduler;
+import com.mercury1089.vision.Yuyv;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs recorded frames through both pipelines as fast as possible, without a camera or network tables,
+ * and writes what was found in every frame, along with the throughput, to a CSV file.
+ * Useful for checking that changes still find the same targets, and how fast they do it, on any computer.
+ *
+ * <p>Usage: {@code Replay <image directory, video file or .rec recording> [results file]}
+ *
+ * <p>Thresholds are read from vision.properties as comma separated lists under the same keys as the
+ * robot's preferences, hslThresholdPi and hslThresholdLifeCam, and contour filter settings under the name of
+ * the target, e.g. gearVision.minArea. The threshold engine is read under threshold_engine,
+ * whether to find blobs under extraction, and how to pair up targets under pairing.
+ * With motion_gate on, frames that have not changed reuse the last result, the same as on the robot.
+ * Recordings made by a {@link com.mercury1089.vision.FrameRecorder} are played back with the times they were captured at.
+ * Tracking and starting each pose from the last are only used for videos and recordings, since images in a directory
+ * are not necessarily of the same scene.
+ *
+ * <p>With processing=scheduled, each target is instead a camera of its own on a {@link VisionScheduler}, grabbing its
+ * own copy of the frames no faster than they were captured, and any frame it is too busy for is dropped, the same as
+ * on the robot. Only the frames that were processed are written, and how many were dropped is printed.
+ */
+public class Replay {
+    private static final String HEADER = "target,sequence,captureTime,processMicros,seeTarget,"
+        + "centerTotalX,centerTotalY,centerTarget1X,centerTarget1Y,centerTarget2X,centerTarget2Y,"
+        + "boundsTotalW,boundsTotalH,boundsTarget1W,boundsTarget1H,boundsTarget2W,boundsTarget2H,confidence,"
+        + "distance,yaw,skew";
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * One pipeline being replayed, along with everything it needs to find a target.
+     */
+    private static class Target {
+        final String NAME;
+        final MercPipeline PIPELINE;
+        final TargetFinder FINDER;
+        final TargetResult RESULT = new TargetResult();
+        final TrackingSettings TRACKING = new TrackingSettings();
+        final RoiTracker TRACKER = new RoiTracker(TRACKING);
+        final PoseEstimator POSE;
+
+        long frames = 0, nanos = 0;
+
+        Target(String name, String thresholdKey, String camera, boolean sequence, boolean yuyv) {
+            NAME = name;
+            FINDER = new TargetFinder(PairingSettings.forTarget(name));
+            // Only frames in a sequence follow on from each other, so a directory of images is never tracked
+            TRACKING.enabled = sequence && "on".equals(VisionConfig.getProperty("tracking", "off"));
+            PIPELINE = new MercPipeline(MercPipeline.DEFAULT_THRESHOLD, new FilterContourSettings());
+            PIPELINE.setSettings(PIPELINE.settings().withConfig(name, thresholdKey));
+            PIPELINE.setThresholdEngine(yuyv
+                ? new YuyvThresholdEngine()
+                : ThresholdEngine.forName(VisionConfig.getProperty("threshold_engine", "opencv")));
+            PIPELINE.setBlobExtraction("blobs".equals(VisionConfig.getProperty("extraction", "contours")));
+            PIPELINE.setPyramidFactor(Integer.parseInt(VisionConfig.getProperty("pyramid", "1")));
+            PIPELINE.setBands(Integer.parseInt(VisionConfig.getProperty("bands", "1")));
+
+            if ("on".equals(VisionConfig.getProperty("pose", "off"))) {
+                PoseSettings pose = PoseSettings.forTarget(name, camera, Main.RES_X, Main.RES_Y);
+                pose.warmStart = sequence;
+                POSE = new PoseEstimator(pose);
+            } else {
+                POSE = null;
+            }
+        }
+
+        /**
+         * Finds and tracks the target in the frame the pipeline just processed.
+         */
+        void find(int frameWidth, int frameHeight) {
+            FINDER.find(PIPELINE, RESULT);
+            TRACKER.update(PIPELINE, RESULT, frameWidth, frameHeight);
+            if (POSE != null)
+                POSE.solve(RESULT);
+        }
+    }
+
+    /**
+     * Hands out the frames of another source no faster than they were captured, the way a camera would.
+     */
+    private static class PacedSource implements FrameSource {
+        private final FrameSource SOURCE;
+
+        private long firstCapture, firstNanos;
+        // Only read once the grabbing thread is done
+        long grabbed = 0;
+
+        PacedSource(FrameSource source) {
+            SOURCE = source;
+        }
+
+        @Override
+        public long grabFrame(Mat image) {
+            long captureTime = SOURCE.grabFrame(image);
+            if (captureTime == 0)
+                return 0;
+
+            if (grabbed++ == 0) {
+                firstCapture = captureTime;
+                firstNanos = System.nanoTime();
+            }
+
+            long wait;
+            while ((wait = (captureTime - firstCapture) * 1000 - (System.nanoTime() - firstNanos)) > 0 && !Thread.currentThread().isInterrupted())
+                LockSupport.parkNanos(wait);
+
+            return captureTime;
+        }
+
+        @Override
+        public String getError() {
+            return SOURCE.getError();
+        }
+
+        @Override
+        public int frameType() {
+            return SOURCE.frameType();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return SOURCE.isFinished();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: Replay <image directory, video file or .rec recording> [results file]");
+            return;
+        }
+
+        File input = new File(args[0]);
+        String output = args.length > 1 ? args[1] : "replay.csv";
+
+        // Frames are turned into what the camera would have sent in YUYV, to check thresholding in YUV
+        boolean yuyv = "yuyv".equals(VisionConfig.getProperty("capture", "bgr"));
+
+        Target[] targets = {
+            new Target("gearVision", "hslThresholdPi", "Pi", !input.isDirectory(), yuyv),
+            new Target("highGoal", "hslThresholdLifeCam", "LifeCam", !input.isDirectory(), yuyv)
+        };
+
+        if ("scheduled".equals(VisionConfig.getProperty("processing", "sequential"))) {
+            replayScheduled(input, output, targets, yuyv);
+            return;
+        }
+
+        FrameSource source = open(input);
+
+        // One gate for both targets, since they see the same frames
+        MotionGate gate = "on".equals(VisionConfig.getProperty("motion_gate", "off"))
+            ? new MotionGate(
+                8,
+                Integer.parseInt(VisionConfig.getProperty("motion_threshold", "10")),
+                Double.parseDouble(VisionConfig.getProperty("motion_fraction", "0.005")),
+                Long.parseLong(VisionConfig.getProperty("motion_refresh_ms", "500")))
+            : null;
+
+        // Both targets share each frame, so it is only converted once
+        Mat grabbed = new Mat(), img = new Mat();
+        SharedFrame frame = new SharedFrame(img);
+        long sequence = 0, start = System.nanoTime();
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(output)))) {
+            out.println(HEADER);
+
+            while (!source.isFinished()) {
+                long captureTime = source.grabFrame(grabbed);
+                if (captureTime == 0) {
+                    if (!source.isFinished())
+                        System.out.println(source.getError());
+                    continue;
+                }
+
+                convert(grabbed, img, yuyv);
+
+                sequence++;
+                frame.reset();
+                boolean process = gate == null || gate.shouldProcess(img, captureTime);
+
+                for (Target target : targets) {
+                    long time = System.nanoTime();
+
+                    if (process) {
+                        target.PIPELINE.process(frame);
+                        target.find(img.cols(), img.rows());
+                    }
+
+                    time = System.nanoTime() - time;
+                    target.frames++;
+                    target.nanos += time;
+
+                    writeResult(out, target, sequence, captureTime, time);
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String summary = String.format("# %d frames in %.3f s, %.1f fps overall", sequence, seconds, sequence / seconds);
+            System.out.println(summary);
+            out.println(summary);
+
+            if (gate != null) {
+                summary = String.format("# %.1f%% of frames skipped as unchanged", gate.skipRate() * 100);
+                System.out.println(summary);
+                out.println(summary);
+            }
+
+            for (Target target : targets) {
+                summary = String.format("# %s: %.1f fps, %.3f ms per frame", target.NAME,
+                    target.frames / (target.nanos / 1e9), target.nanos / 1e6 / Math.max(1, target.frames));
+                System.out.println(summary);
+                out.println(summary);
+            }
+        }
+
+        frame.release();
+        grabbed.release();
+        img.release();
+    }
+
+    /**
+     * Replays the frames with each target on a scheduler of its own, as a camera grabbing its own copy of the frames.
+     * The gear target goes first whenever every worker is busy, as on the robot.
+     */
+    private static void replayScheduled(File input, String output, Target[] targets, boolean yuyv) throws IOException {
+        if ("on".equals(VisionConfig.getProperty("motion_gate", "off")))
+            System.out.println("Frames are only skipped with sequential processing");
+
+        int workers = Integer.parseInt(VisionConfig.getProperty("workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        VisionScheduler scheduler = new VisionScheduler(workers);
+        PacedSource[] sources = new PacedSource[targets.length];
+        Mat[] images = new Mat[targets.length];
+        long start = System.nanoTime();
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(output)))) {
+            out.println(HEADER);
+
+            for (int i = 0; i < targets.length; i++) {
+                Target target = targets[i];
+                Mat img = images[i] = new Mat();
+                sources[i] = new PacedSource(open(input));
+
+                scheduler.add(target.NAME, sources[i], (grabbed, sequence, captureTime) -> {
+                    convert(grabbed, img, yuyv);
+
+                    long time = System.nanoTime();
+                    target.PIPELINE.process(img);
+                    target.find(img.cols(), img.rows());
+
+                    time = System.nanoTime() - time;
+                    target.frames++;
+                    target.nanos += time;
+
+                    // Both targets write as they go, from whichever workers they are on
+                    synchronized (out) {
+                        writeResult(out, target, sequence, captureTime, time);
+                    }
+                }, 0, targets.length - i);
+            }
+
+            scheduler.start();
+            try {
+                scheduler.awaitFinished();
+            } catch (InterruptedException e) {
+                scheduler.stop();
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String summary = String.format("# %.3f s on %d workers", seconds, workers);
+            System.out.println(summary);
+            out.println(summary);
+
+            for (int i = 0; i < targets.length; i++) {
+                Target target = targets[i];
+                summary = String.format("# %s: %d of %d frames processed, %d dropped, %.3f ms per frame", target.NAME,
+                    target.frames, sources[i].grabbed, sources[i].grabbed - target.frames, target.nanos / 1e6 / Math.max(1, target.frames));
+                System.out.println(summary);
+                out.println(summary);
+            }
+        }
+
+        for (Mat img : images)
+            img.release();
+    }
+
+    /**
+     * @param input an image directory, video file or .rec recording
+     * @return the frames in it, with the times they were captured at
+     */
+    private static FrameSource open(File input) throws IOException {
+        if (input.isDirectory())
+            return new ImageDirectorySource(input, Main.FPS);
+        else if (input.getName().endsWith(".rec"))
+            return new RecordingSource(input);
+        else
+            return new VideoFileSource(input.getPath(), Main.FPS);
+    }
+
+    /**
+     * Copies a grabbed frame into the format being replayed. Recordings made while capturing in YUYV are played back
+     * in whichever format is configured.
+     */
+    private static void convert(Mat grabbed, Mat img, boolean yuyv) {
+        if (Yuyv.isYuyv(grabbed) == yuyv)
+            grabbed.copyTo(img);
+        else if (yuyv)
+            Yuyv.fromBgr(grabbed, img);
+        else
+            Yuyv.toBgr(grabbed, img);
+    }
+
+    private static void writeResult(PrintWriter out, Target target, long sequence, long captureTime, long nanos) {
+        TargetResult result = target.RESULT;
+
+        out.print(target.NAME + "," + sequence + "," + captureTime + "," + nanos / 1000 + "," + result.seeTarget);
+
+        for (double[] values : new double[][] {
+            result.centerTotal, result.centerTarget1, result.centerTarget2,
+            result.boundsTotal, result.boundsTarget1, result.boundsTarget2
+        })
+            out.print("," + values[0] + "," + values[1]);
+
+        out.println("," + result.confidence + "," + result.pose[TargetResult.DISTANCE]
+            + "," + result.pose[TargetResult.YAW] + "," + result.pose[TargetResult.SKEW]);
+    }
+}
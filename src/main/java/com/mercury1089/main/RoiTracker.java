@@ -0,0 +1,92 @@
+package com.mercury1089.main;
+
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * This class narrows down the part of the frame a {@link MercPipeline} searches once a target has been found.
+ * The pipeline only processes a window around the last target until it misses
+ * too many frames in a row, at which point it goes back to searching the full frame.
+ */
+public class RoiTracker {
+    private static final Scalar YELLOW = new Scalar(0, 255, 255);
+
+    private final TrackingSettings SETTINGS;
+
+    private int misses = 0;
+
+    private final Point
+        pt1 = new Point(),
+        pt2 = new Point();
+
+    public RoiTracker(TrackingSettings settings) {
+        SETTINGS = settings;
+    }
+
+    /**
+     * Updates the search window of the pipeline using the result of the frame it just processed.
+     *
+     * @param pipeline    the pipeline that produced the result
+     * @param result      the target values found in the last frame
+     * @param frameWidth  the width of the full frame
+     * @param frameHeight the height of the full frame
+     */
+    public void update(MercPipeline pipeline, TargetResult result, int frameWidth, int frameHeight) {
+        if (!SETTINGS.enabled) {
+            pipeline.clearSearchWindow();
+            misses = 0;
+            return;
+        }
+
+        if (!result.seeTarget) {
+            // Keep looking in the same place for a bit in case the target just flickered out
+            if (++misses > SETTINGS.maxMisses)
+                pipeline.clearSearchWindow();
+            return;
+        }
+
+        misses = 0;
+
+        double
+            width = result.boundsTotal[0],
+            height = result.boundsTotal[1],
+            marginX = Math.max(SETTINGS.minMargin, width * SETTINGS.margin),
+            marginY = Math.max(SETTINGS.minMargin, height * SETTINGS.margin);
+
+        int
+            left = clamp((int)Math.floor(result.centerTotal[0] - width / 2 - marginX), frameWidth),
+            top = clamp((int)Math.floor(result.centerTotal[1] - height / 2 - marginY), frameHeight),
+            right = clamp((int)Math.ceil(result.centerTotal[0] + width / 2 + marginX), frameWidth),
+            bottom = clamp((int)Math.ceil(result.centerTotal[1] + height / 2 + marginY), frameHeight);
+
+        if (right - left <= 0 || bottom - top <= 0) {
+            pipeline.clearSearchWindow();
+            return;
+        }
+
+        pipeline.setSearchWindow(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Draws the search window of the pipeline, if it has one.
+     *
+     * @param img      the frame to draw on
+     * @param pipeline the pipeline whose window should be drawn
+     */
+    public void draw(Mat img, MercPipeline pipeline) {
+        if (!pipeline.hasSearchWindow())
+            return;
+
+        Rect window = pipeline.searchWindow();
+        pt1.x = window.x;
+        pt1.y = window.y;
+        pt2.x = window.x + window.width - 1;
+        pt2.y = window.y + window.height - 1;
+
+        Imgproc.rectangle(img, pt1, pt2, YELLOW, 1);
+    }
+
+    private static int clamp(int value, int max) {
+        return value < 0 ? 0 : (value > max ? max : value);
+    }
+}
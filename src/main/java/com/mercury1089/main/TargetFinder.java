@@ -0,0 +1,414 @@
+package com.mercury1089.main;
+
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class pairs up two of the contours or blobs of a frame into a single target
+ * and draws what it found onto the frame.
+ * With {@link PairingSettings#scored}, every pair that could be the target is scored on how well it matches the
+ * expected geometry, and the best one is picked. Otherwise, the two largest are paired.
+ * All buffers are kept between frames, so once warmed up it does not allocate anything.
+ */
+public class TargetFinder {
+    private static final Scalar
+        RED = new Scalar(0, 0, 255),
+        WHITE =  new Scalar(255, 255, 255),
+        BLUE = new Scalar(255, 0, 0);
+
+    // Spacing, alignment, size ratio, and the aspect ratio of each piece
+    private static final int SCORE_TERMS = 5;
+
+    // Bounding rect of every contour, computed once per frame
+    private int[]
+        rectX = new int[16],
+        rectY = new int[16],
+        rectW = new int[16],
+        rectH = new int[16];
+
+    // Buffer for the points of a contour, as x, y pairs
+    private int[] points = new int[256];
+
+    // Rects sorted along the way the pieces are lined up, as the center (doubled) in the high bits and index in the low
+    private long[] order = new long[16];
+    // Logs of the aspect ratio and area of every rect, indexed the same as the rects
+    private double[]
+        logAspect = new double[16],
+        logArea = new double[16];
+
+    private final PairingSettings SETTINGS;
+
+    private final Point
+        pt1 = new Point(),
+        pt2 = new Point();
+
+    /**
+     * Creates a finder that pairs up the two largest contours or blobs.
+     */
+    public TargetFinder() {
+        this(null);
+    }
+
+    /**
+     * @param settings the expected geometry of the target, or null to pair up the two largest contours or blobs
+     */
+    public TargetFinder(PairingSettings settings) {
+        SETTINGS = settings;
+    }
+
+    /**
+     * Finds the target in whatever the pipeline found in its last frame, blobs or contours.
+     *
+     * @param pipeline the pipeline that just processed a frame
+     * @param result   the result to store the target values in
+     */
+    public void find(MercPipeline pipeline, TargetResult result) {
+        if (pipeline.usesBlobs())
+            find(pipeline.blobsOutput(), result);
+        else
+            find(pipeline.filterContoursOutput(), result);
+    }
+
+    /**
+     * Finds the target made up by two of the contours and stores its values in the result.
+     * Contours are compared by their bounding rects.
+     *
+     * @param contours the filtered contours from a pipeline
+     * @param result   the result to store the target values in
+     */
+    public void find(List<MatOfPoint> contours, TargetResult result) {
+        int size = contours.size();
+        ensureCapacity(size);
+
+        for (int i = 0; i < size; i++)
+            boundingRect(contours.get(i), i);
+
+        pair(rectX, rectY, rectW, rectH, size, result);
+    }
+
+    /**
+     * Finds the target made up by two of the blobs and stores its values in the result.
+     * Blobs are compared by their bounding rects, the same as contours.
+     * Their rects are already known, so nothing has to be read from OpenCV.
+     *
+     * @param blobs  the blobs from a pipeline
+     * @param result the result to store the target values in
+     */
+    public void find(Blobs blobs, TargetResult result) {
+        pair(blobs.x, blobs.y, blobs.width, blobs.height, blobs.count, result);
+    }
+
+    /**
+     * Pairs up two of the specified rects into a target, either by score or by size.
+     */
+    private void pair(int[] rectX, int[] rectY, int[] rectW, int[] rectH, int size, TargetResult result) {
+        result.reset();
+
+        if (SETTINGS != null && SETTINGS.scored)
+            pairScored(rectX, rectY, rectW, rectH, size, result);
+        else
+            pairLargest(rectX, rectY, rectW, rectH, size, result);
+    }
+
+    /**
+     * Pairs up the two largest of the specified rects into a target.
+     */
+    private static void pairLargest(int[] rectX, int[] rectY, int[] rectW, int[] rectH, int size, TargetResult result) {
+        // Pick out the two largest rects. Ties go to the one that came first.
+        int first = -1, second = -1;
+        double firstArea = -1, secondArea = -1;
+
+        for (int i = 0; i < size; i++) {
+            double area = (double)rectW[i] * rectH[i];
+
+            if (area > firstArea) {
+                second = first;
+                secondArea = firstArea;
+                first = i;
+                firstArea = area;
+            } else if (area > secondArea) {
+                second = i;
+                secondArea = area;
+            }
+        }
+
+        if (second != -1) {
+            int
+                target1 = second,
+                target2 = first;
+
+            result.seeTarget = true;
+
+            // The first rectangle should be the leftmost rectangle OR
+            // the topmost rectangle, depending on the target
+            if (Math.abs(rectX[target2] - rectX[target1]) > 5 ? rectX[target2] < rectX[target1] : rectY[target2] < rectY[target1]) {
+                int swap;
+                swap = target1;
+                target1 = target2;
+                target2 = swap;
+            }
+
+            result.confidence = 1;
+            setTarget(result, rectX, rectY, rectW, rectH, target1, target2);
+        }
+    }
+
+    /**
+     * Pairs up the two rects that best match the expected geometry into a target.
+     * Every term of the score is how many tolerances off it is, squared, so the confidence is the geometric mean
+     * of a normal curve over each term. Rects are sorted along the way the pieces are lined up, and each one is
+     * only compared with the ones after it whose spacing alone would not score worse than the best pair so far,
+     * so the number of pairs scored grows with how crowded the frame is, not with the square of the number of rects.
+     */
+    private void pairScored(int[] rectX, int[] rectY, int[] rectW, int[] rectH, int size, TargetResult result) {
+        PairingSettings settings = SETTINGS;
+        boolean stacked = settings.stacked;
+
+        if (order.length < size) {
+            int length = Math.max(size, order.length * 2);
+            order = new long[length];
+            logAspect = new double[length];
+            logArea = new double[length];
+        }
+
+        // Centers are doubled so that they stay whole numbers
+        for (int i = 0; i < size; i++) {
+            long center = stacked ? 2L * rectY[i] + rectH[i] : 2L * rectX[i] + rectW[i];
+            order[i] = center << 32 | i;
+            logAspect[i] = Math.log((double)rectW[i] / rectH[i]);
+            logArea[i] = Math.log((double)rectW[i] * rectH[i]);
+        }
+
+        Arrays.sort(order, 0, size);
+
+        double
+            logSpacing = Math.log(settings.spacing),
+            logSize = Math.log(settings.sizeRatio),
+            logAspect1 = Math.log(settings.aspect1),
+            logAspect2 = Math.log(settings.aspect2);
+
+        // Anything scoring worse than this would be below the lowest confidence anyway
+        int best1 = -1, best2 = -1;
+        double bestScore = -2 * SCORE_TERMS * Math.log(settings.minConfidence);
+
+        for (int a = 0; a < size; a++) {
+            int i = (int)order[a];
+            long centerI = order[a] >> 32;
+            double
+                heightI = rectH[i],
+                scoreI = square((logAspect[i] - logAspect1) / settings.aspectTolerance);
+
+            if (scoreI >= bestScore)
+                continue;
+
+            // The spacing that would score as badly as the best pair so far, on its own, doubled like the centers
+            double reach = settings.spacingTolerance * Math.sqrt(bestScore - scoreI);
+            long
+                from = centerI + (long)Math.ceil(2 * heightI * settings.spacing * Math.exp(-reach)),
+                to = centerI + (long)Math.floor(2 * heightI * settings.spacing * Math.exp(reach));
+
+            for (int b = firstFrom(Math.max(from, centerI + 1), a + 1, size); b < size; b++) {
+                long centerJ = order[b] >> 32;
+                if (centerJ > to)
+                    break;
+
+                int j = (int)order[b];
+
+                double across = stacked
+                    ? ((2.0 * rectX[j] + rectW[j]) - (2.0 * rectX[i] + rectW[i])) / 2.0 / rectW[i]
+                    : ((2.0 * rectY[j] + rectH[j]) - (2.0 * rectY[i] + rectH[i])) / 2.0 / heightI;
+
+                // Leave the spacing, which needs a log of its own, for last
+                double score = scoreI
+                    + square(across / settings.alignmentTolerance)
+                    + square((logArea[j] - logArea[i] - logSize) / settings.sizeTolerance)
+                    + square((logAspect[j] - logAspect2) / settings.aspectTolerance);
+
+                if (score >= bestScore)
+                    continue;
+
+                score += square((Math.log((centerJ - centerI) / 2.0 / heightI) - logSpacing) / settings.spacingTolerance);
+
+                if (score < bestScore) {
+                    bestScore = score;
+                    best1 = i;
+                    best2 = j;
+
+                    // Nothing further away can beat it now
+                    reach = settings.spacingTolerance * Math.sqrt(bestScore - scoreI);
+                    to = centerI + (long)Math.floor(2 * heightI * settings.spacing * Math.exp(reach));
+                }
+            }
+        }
+
+        if (best1 == -1)
+            return;
+
+        result.seeTarget = true;
+        result.confidence = Math.exp(-bestScore / 2 / SCORE_TERMS);
+        setTarget(result, rectX, rectY, rectW, rectH, best1, best2);
+    }
+
+    /**
+     * Finds the first of the sorted rects, from an index on, whose doubled center is at least the specified one.
+     */
+    private int firstFrom(long center, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (order[middle] >> 32 < center)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * Stores the values of the target made up by the two specified rects.
+     *
+     * @param result  the result to store the values in
+     * @param target1 the index of the left/top rect
+     * @param target2 the index of the right/bottom rect
+     */
+    private static void setTarget(TargetResult result, int[] rectX, int[] rectY, int[] rectW, int[] rectH, int target1, int target2) {
+        int
+            x1 = rectX[target1], y1 = rectY[target1], w1 = rectW[target1], h1 = rectH[target1],
+            x2 = rectX[target2], y2 = rectY[target2], w2 = rectW[target2], h2 = rectH[target2];
+
+        // Our targeting rect needs to encapsulate both vision targets
+        double
+            left = x1,
+            top = y1 < y2 ? y1 : y2,
+            right = x2 + w2,
+            bottom = y1 < y2 ? y2 + h2 : y1 + h1;
+
+        // Create the bounds for the entire target,
+        // the left/top target,
+        // and the right/bottom target
+        result.boundsTotal[0] = right - left;
+        result.boundsTotal[1] = bottom - top;
+        result.boundsTarget1[0] = w1;
+        result.boundsTarget1[1] = h1;
+        result.boundsTarget2[0] = w2;
+        result.boundsTarget2[1] = h2;
+
+        // Get the center of the entire target,
+        // the left/top target,
+        // and the right/bottom target
+        result.centerTotal[0] = left + result.boundsTotal[0] / 2;
+        result.centerTotal[1] = top + result.boundsTotal[1] / 2;
+        result.centerTarget1[0] = x1 + w1 / 2.0;
+        result.centerTarget1[1] = y1 + h1 / 2.0;
+        result.centerTarget2[0] = x2 + w2 / 2.0;
+        result.centerTarget2[1] = y2 + h2 / 2.0;
+    }
+
+    /**
+     * Computes the bounding rect of a contour and stores it at the specified index.
+     * This gives the same rect as {@link Imgproc#boundingRect(MatOfPoint)},
+     * but reads all the points in one go instead of allocating a new {@link Rect}.
+     */
+    private void boundingRect(MatOfPoint contour, int index) {
+        int n = contour.rows() * 2;
+
+        if (points.length < n)
+            points = new int[n * 2];
+
+        contour.get(0, 0, points);
+
+        int
+            minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE,
+            maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+        for (int i = 0; i < n; i += 2) {
+            int x = points[i], y = points[i + 1];
+
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+
+        if (n == 0) {
+            minX = minY = 0;
+            maxX = maxY = -1;
+        }
+
+        rectX[index] = minX;
+        rectY[index] = minY;
+        rectW[index] = maxX - minX + 1;
+        rectH[index] = maxY - minY + 1;
+    }
+
+    /**
+     * Grows the rect buffers so they can hold the specified number of rects.
+     */
+    private void ensureCapacity(int size) {
+        if (rectX.length >= size)
+            return;
+
+        int length = Math.max(size, rectX.length * 2);
+        rectX = new int[length];
+        rectY = new int[length];
+        rectW = new int[length];
+        rectH = new int[length];
+    }
+
+    /**
+     * Draws the target and a midpoint crosshair onto the specified frame.
+     *
+     * @param img    the frame to draw on
+     * @param result the target values found for the frame
+     */
+    public void draw(Mat img, TargetResult result) {
+        if (result.seeTarget) {
+            double[]
+                centerTotal = result.centerTotal,
+                boundsTotal = result.boundsTotal;
+
+            drawRect(img, result.centerTarget1, result.boundsTarget1, BLUE);
+            drawRect(img, result.centerTarget2, result.boundsTarget2, BLUE);
+            drawRect(img, centerTotal, boundsTotal, RED);
+
+            drawLine(img, centerTotal[0], centerTotal[1] - 5, centerTotal[0], centerTotal[1] + 5, RED, 3);
+            drawLine(img, centerTotal[0] - 5, centerTotal[1], centerTotal[0] + 5, centerTotal[1], RED, 3);
+        }
+
+        // Draw a midpoint
+        drawLine(img, Main.RES_X / 2.0, 50, Main.RES_X / 2.0, Main.RES_Y - 50, WHITE, 1);
+        drawLine(img, 50, Main.RES_Y / 2.0, Main.RES_X - 50, Main.RES_Y / 2.0, WHITE, 1);
+    }
+
+    /**
+     * Draws a rectangle from its center and bounds.
+     */
+    private void drawRect(Mat img, double[] center, double[] bounds, Scalar color) {
+        pt1.x = center[0] - bounds[0] / 2;
+        pt1.y = center[1] - bounds[1] / 2;
+        pt2.x = center[0] + bounds[0] / 2;
+        pt2.y = center[1] + bounds[1] / 2;
+
+        Imgproc.rectangle(img, pt1, pt2, color, 3);
+    }
+
+    /**
+     * Draws a line between two points.
+     */
+    private void drawLine(Mat img, double x1, double y1, double x2, double y2, Scalar color, int thickness) {
+        pt1.x = x1;
+        pt1.y = y1;
+        pt2.x = x2;
+        pt2.y = y2;
+
+        Imgproc.line(img, pt1, pt2, color, thickness);
+    }
+}
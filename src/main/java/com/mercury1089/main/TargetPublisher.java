@@ -0,0 +1,176 @@
+package com.mercury1089.main;
+
+import edu.wpi.first.wpilibj.tables.ITable;
+
+import java.util.Calendar;
+
+/**
+ * This class outputs the values of a {@link TargetResult} to a network table.
+ */
+public class TargetPublisher {
+    /**
+     * How the values are put into the table.
+     */
+    public enum Mode {
+        /**
+         * Every value under its own key, every frame.
+         */
+        FULL,
+        /**
+         * Every value packed into a single "record" array, only when something has changed.
+         * Since the array is put all at once, a reader always sees values from the same frame.
+         * The indices into the array are the constants in {@link TargetPublisher}.
+         */
+        PACKED
+    }
+
+    // Indices into the packed record
+    public static final int
+        SEQUENCE = 0,
+        CAPTURE_TIME = 1,
+        SEE_TARGET = 2,
+        CENTER_TOTAL = 3,
+        CENTER_TARGET_1 = 5,
+        CENTER_TARGET_2 = 7,
+        BOUNDS_TOTAL = 9,
+        BOUNDS_TARGET_1 = 11,
+        BOUNDS_TARGET_2 = 13,
+        DELTA_TIME = 15,
+        TRACKED = 16,
+        FILTERED_CENTER = 17,
+        FILTERED_BOUNDS = 19,
+        CENTER_VELOCITY = 21,
+        PREDICTED_CENTER = 23,
+        PREDICTED_BOUNDS = 25,
+        CONFIDENCE = 27,
+        POSE = 28,
+        RECORD_LENGTH = 31;
+
+    // Republish an unchanged record after this long, in microseconds,
+    // so that the robot can tell a stale record from a dead camera
+    private static final long REFRESH_MICROS = 1000000;
+
+    private final ITable TABLE;
+    private final Mode MODE;
+    private final PredictionSettings PREDICTION;
+
+    private final double[]
+        predictedCenter = new double[2],
+        predictedBounds = new double[2];
+
+    private final double[] record = new double[RECORD_LENGTH];
+    private final double[] lastRecord = new double[RECORD_LENGTH];
+    private boolean published = false;
+
+    /**
+     * @param table      the network table to output values to
+     * @param mode       how the values are put into the table
+     * @param prediction the settings of the tracker that filled in the filtered values, for the capture latency
+     */
+    public TargetPublisher(ITable table, Mode mode, PredictionSettings prediction) {
+        TABLE = table;
+        MODE = mode;
+        PREDICTION = prediction;
+    }
+
+    /**
+     * Outputs the values of a result.
+     *
+     * @param result      the result to output
+     * @param sequence    the number of the frame the result was found in, counting up by one for every frame grabbed
+     * @param captureTime the time given by the sink for the frame, in microseconds
+     * @param deltaTime   the time it took to get the result, in milliseconds
+     */
+    public void publish(TargetResult result, long sequence, long captureTime, double deltaTime) {
+        // Where the target should be by now, since the frame was captured
+        double age = deltaTime + PREDICTION.captureLatency;
+        result.predictCenter(age, predictedCenter);
+        result.predictBounds(age, predictedBounds);
+
+        // The record is always filled in, so that it can be recorded whatever the mode
+        fillRecord(result, sequence, captureTime, deltaTime);
+
+        if (MODE == Mode.PACKED) {
+            publishRecord(captureTime);
+            return;
+        }
+
+        TABLE.putBoolean("seeTarget", result.seeTarget);
+        TABLE.putNumber("targetWidth", result.boundsTotal[0]);
+        TABLE.putNumber("targetHeight", result.boundsTotal[1]);
+        TABLE.putNumberArray("boundsTotal", result.boundsTotal);
+        TABLE.putNumberArray("center", result.centerTotal);
+        TABLE.putNumberArray("centerTotal", result.centerTotal);
+        TABLE.putNumberArray("centerTarget1", result.centerTarget1);
+        TABLE.putNumberArray("centerTarget2", result.centerTarget2);
+        TABLE.putNumberArray("boundsTarget1", result.boundsTarget1);
+        TABLE.putNumberArray("boundsTarget2", result.boundsTarget2);
+        TABLE.putNumber("confidence", result.confidence);
+        // Put together, so that the robot never reads a distance from one frame with an angle from another
+        TABLE.putNumberArray("pose", result.pose);
+        TABLE.putNumber("deltaTime", deltaTime);
+        TABLE.putString("publishTime", Calendar.getInstance().getTime().toString());
+
+        TABLE.putBoolean("tracked", result.tracked);
+        TABLE.putNumberArray("filteredCenter", result.filteredCenter);
+        TABLE.putNumberArray("filteredBounds", result.filteredBounds);
+        TABLE.putNumberArray("centerVelocity", result.centerVelocity);
+        TABLE.putNumberArray("predictedCenter", predictedCenter);
+        TABLE.putNumberArray("predictedBounds", predictedBounds);
+        TABLE.putNumber("age", age);
+    }
+
+    /**
+     * @return the values of the last result published, in the layout of the packed record.
+     *         The array is reused for every result, so it should be copied to be kept.
+     */
+    public double[] record() {
+        return record;
+    }
+
+    private void fillRecord(TargetResult result, long sequence, long captureTime, double deltaTime) {
+        record[SEQUENCE] = sequence;
+        record[CAPTURE_TIME] = captureTime;
+        record[SEE_TARGET] = result.seeTarget ? 1 : 0;
+        System.arraycopy(result.centerTotal, 0, record, CENTER_TOTAL, 2);
+        System.arraycopy(result.centerTarget1, 0, record, CENTER_TARGET_1, 2);
+        System.arraycopy(result.centerTarget2, 0, record, CENTER_TARGET_2, 2);
+        System.arraycopy(result.boundsTotal, 0, record, BOUNDS_TOTAL, 2);
+        System.arraycopy(result.boundsTarget1, 0, record, BOUNDS_TARGET_1, 2);
+        System.arraycopy(result.boundsTarget2, 0, record, BOUNDS_TARGET_2, 2);
+        record[DELTA_TIME] = deltaTime;
+        record[TRACKED] = result.tracked ? 1 : 0;
+        System.arraycopy(result.filteredCenter, 0, record, FILTERED_CENTER, 2);
+        System.arraycopy(result.filteredBounds, 0, record, FILTERED_BOUNDS, 2);
+        System.arraycopy(result.centerVelocity, 0, record, CENTER_VELOCITY, 2);
+        System.arraycopy(predictedCenter, 0, record, PREDICTED_CENTER, 2);
+        System.arraycopy(predictedBounds, 0, record, PREDICTED_BOUNDS, 2);
+        record[CONFIDENCE] = result.confidence;
+        System.arraycopy(result.pose, 0, record, POSE, 3);
+    }
+
+    private void publishRecord(long captureTime) {
+        if (published && !changed() && captureTime - (long)lastRecord[CAPTURE_TIME] < REFRESH_MICROS)
+            return;
+
+        TABLE.putNumberArray("record", record);
+        System.arraycopy(record, 0, lastRecord, 0, RECORD_LENGTH);
+        published = true;
+    }
+
+    /**
+     * Only the target values count as a change, not the frame number or timings,
+     * nor the predictions that depend on them.
+     */
+    private boolean changed() {
+        return changed(SEE_TARGET, DELTA_TIME) || changed(TRACKED, PREDICTED_CENTER) || changed(CONFIDENCE, RECORD_LENGTH);
+    }
+
+    private boolean changed(int from, int to) {
+        for (int i = from; i < to; i++)
+            if (record[i] != lastRecord[i])
+                return true;
+
+        return false;
+    }
+}
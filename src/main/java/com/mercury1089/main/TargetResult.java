@@ -0,0 +1,126 @@
+package com.mercury1089.main;
+
+/**
+ * This class holds all the values found for a target in a single frame.
+ * Each array is a pair of values, either an (x, y) center or a (width, height) bound.
+ * Anything that was not found is left at -1.
+ * The filtered values and velocities are filled in by a {@link TargetTracker}, and the pose by a
+ * {@link PoseEstimator}, if they are used.
+ */
+public class TargetResult {
+    // Indices into the pose
+    public static final int
+        DISTANCE = 0,
+        YAW = 1,
+        SKEW = 2;
+
+    public boolean seeTarget = false;
+
+    public final double[]
+        centerTotal = {-1, -1},
+        centerTarget1 = {-1, -1},
+        centerTarget2 = {-1, -1},
+        boundsTotal = {-1, -1},
+        boundsTarget1 = {-1, -1},
+        boundsTarget2 = {-1, -1};
+
+    // How well the pair matched the expected geometry, from 0 to 1. Always 1 when the two largest are paired.
+    public double confidence = 0;
+
+    // Whether a track is being kept, even if the target was not seen in this frame
+    public boolean tracked = false;
+
+    // Smoothed center and bounds, and how fast they are changing in pixels per second
+    public final double[]
+        filteredCenter = {-1, -1},
+        filteredBounds = {-1, -1},
+        centerVelocity = {0, 0},
+        boundsVelocity = {0, 0};
+
+    // Distance to the target in inches, the angle to it and how far it is turned away in degrees.
+    // The distance is -1 if there is no pose.
+    public final double[] pose = {-1, 0, 0};
+
+    /**
+     * Clears all values so that this result can be reused for another frame.
+     */
+    public void reset() {
+        seeTarget = false;
+
+        centerTotal[0] = centerTotal[1] = -1;
+        centerTarget1[0] = centerTarget1[1] = -1;
+        centerTarget2[0] = centerTarget2[1] = -1;
+        boundsTotal[0] = boundsTotal[1] = -1;
+        boundsTarget1[0] = boundsTarget1[1] = -1;
+        boundsTarget2[0] = boundsTarget2[1] = -1;
+        confidence = 0;
+
+        clearTracked();
+
+        pose[DISTANCE] = -1;
+        pose[YAW] = pose[SKEW] = 0;
+    }
+
+    /**
+     * Clears the filtered values and velocities, for when the target is no longer tracked.
+     */
+    public void clearTracked() {
+        tracked = false;
+
+        filteredCenter[0] = filteredCenter[1] = -1;
+        filteredBounds[0] = filteredBounds[1] = -1;
+        centerVelocity[0] = centerVelocity[1] = 0;
+        boundsVelocity[0] = boundsVelocity[1] = 0;
+    }
+
+    /**
+     * Copies all values from another result into this one.
+     *
+     * @param other the result to copy from
+     */
+    public void copyFrom(TargetResult other) {
+        seeTarget = other.seeTarget;
+
+        System.arraycopy(other.centerTotal, 0, centerTotal, 0, 2);
+        System.arraycopy(other.centerTarget1, 0, centerTarget1, 0, 2);
+        System.arraycopy(other.centerTarget2, 0, centerTarget2, 0, 2);
+        System.arraycopy(other.boundsTotal, 0, boundsTotal, 0, 2);
+        System.arraycopy(other.boundsTarget1, 0, boundsTarget1, 0, 2);
+        System.arraycopy(other.boundsTarget2, 0, boundsTarget2, 0, 2);
+        confidence = other.confidence;
+
+        tracked = other.tracked;
+
+        System.arraycopy(other.filteredCenter, 0, filteredCenter, 0, 2);
+        System.arraycopy(other.filteredBounds, 0, filteredBounds, 0, 2);
+        System.arraycopy(other.centerVelocity, 0, centerVelocity, 0, 2);
+        System.arraycopy(other.boundsVelocity, 0, boundsVelocity, 0, 2);
+
+        System.arraycopy(other.pose, 0, pose, 0, 3);
+    }
+
+    /**
+     * Predicts the center of the target some time after the frame, assuming it keeps moving the same way.
+     *
+     * @param age  the time since the frame was captured, in milliseconds
+     * @param out  the array to store the predicted center in; -1 if there is no track
+     */
+    public void predictCenter(double age, double[] out) {
+        predict(filteredCenter, centerVelocity, age, out);
+    }
+
+    /**
+     * Predicts the bounds of the target some time after the frame, assuming they keep changing the same way.
+     *
+     * @param age  the time since the frame was captured, in milliseconds
+     * @param out  the array to store the predicted bounds in; -1 if there is no track
+     */
+    public void predictBounds(double age, double[] out) {
+        predict(filteredBounds, boundsVelocity, age, out);
+    }
+
+    private void predict(double[] values, double[] velocity, double age, double[] out) {
+        for (int i = 0; i < 2; i++)
+            out[i] = tracked ? values[i] + velocity[i] * age / 1000 : -1;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.Frame;
+import com.mercury1089.vision.FrameMetrics;
+import com.mercury1089.vision.PipelinedVisionThread;
+import edu.wpi.first.wpilibj.tables.ITable;
+import org.opencv.core.Mat;
+
+/**
+ * The stages of a {@link PipelinedVisionThread} running a {@link MercPipeline}:
+ * finding the target, drawing it, and publishing it the same way {@link VisionThread} does.
+ */
+public class TargetStages implements PipelinedVisionThread.Stages<MercPipeline, TargetResult> {
+    // Separate finders for the process and annotate stages, since they run on different threads
+    private final TargetFinder
+        FINDER,
+        DRAWER = new TargetFinder();
+
+    private final RoiTracker TRACKER;
+    private final TargetTracker PREDICTOR;
+    private final TargetPublisher PUBLISHER;
+    private final PoseEstimator POSE;
+    private final FrameMetrics<FrameStage> METRICS;
+    private final ITable METRICS_TABLE;
+
+    /**
+     * @param trackingSettings the settings for only searching around a target once it is found
+     * @param predictionSettings the settings for smoothing and predicting the motion of the target
+     * @param pairingSettings the expected geometry of the target, to pick it out of everything found
+     * @param table the network table to output metrics to
+     * @param publisher the publisher to output values with
+     * @param metrics the metrics to time each stage with, published to the "metrics" sub table
+     * @param pose the estimator to work out where the target is with, or null to not
+     */
+    public TargetStages(TrackingSettings trackingSettings, PredictionSettings predictionSettings, PairingSettings pairingSettings, ITable table, TargetPublisher publisher, FrameMetrics<FrameStage> metrics, PoseEstimator pose) {
+        FINDER = new TargetFinder(pairingSettings);
+        TRACKER = new RoiTracker(trackingSettings);
+        PREDICTOR = new TargetTracker(predictionSettings);
+        PUBLISHER = publisher;
+        POSE = pose;
+        METRICS = metrics;
+        METRICS_TABLE = table.getSubTable("metrics");
+    }
+
+    @Override
+    public TargetResult newResult() {
+        return new TargetResult();
+    }
+
+    @Override
+    public void copy(TargetResult from, TargetResult to) {
+        to.copyFrom(from);
+    }
+
+    @Override
+    public void extract(MercPipeline pipeline, Mat image, long captureTime, TargetResult result) {
+        long start = System.nanoTime();
+        FINDER.find(pipeline, result);
+        PREDICTOR.update(result, captureTime);
+
+        // Narrow down where to search in the next frame
+        TRACKER.update(pipeline, result, image.cols(), image.rows());
+        start = METRICS.recordSince(FrameStage.PAIR, start);
+
+        if (POSE != null) {
+            POSE.solve(result);
+            METRICS.recordSince(FrameStage.POSE, start);
+        }
+    }
+
+    @Override
+    public void annotate(Mat image, TargetResult result) {
+        long start = System.nanoTime();
+        DRAWER.draw(image, result);
+        METRICS.recordSince(FrameStage.DRAW, start);
+    }
+
+    @Override
+    public void publish(Frame<TargetResult> frame) {
+        long start = System.nanoTime();
+        PUBLISHER.publish(frame.result, frame.sequence, frame.captureTime, (start - frame.grabNanos) / 1e6);
+        METRICS.recordSince(FrameStage.PUBLISH, start);
+
+        METRICS.frameDone();
+        METRICS.publishIfDue(METRICS_TABLE);
+    }
+
+    @Override
+    public void grabbed(long waitNanos) {
+        METRICS.record(FrameStage.GRAB_WAIT, waitNanos);
+    }
+
+    @Override
+    public void streamed(long putFrameNanos) {
+        METRICS.record(FrameStage.PUT_FRAME, putFrameNanos);
+    }
+}
@@ -0,0 +1,175 @@
+package com.mercury1089.main;
+
+/**
+ * This class smooths the center and bounds of a target over time and works out how fast they are changing,
+ * with a constant velocity Kalman filter on each of them, stepped by the capture time of every frame.
+ * If the target is missed for a few frames, the track coasts on its last velocity until it is seen again.
+ */
+public class TargetTracker {
+    private final PredictionSettings SETTINGS;
+
+    // Center x, center y, width, height
+    private final Axis[] AXES = {new Axis(), new Axis(), new Axis(), new Axis()};
+    private final double[] measured = new double[4];
+
+    private boolean tracking = false;
+    private long lastTime = 0;
+    private int misses = 0;
+
+    public TargetTracker(PredictionSettings settings) {
+        SETTINGS = settings;
+    }
+
+    /**
+     * Updates the track with the target found in a frame, and fills in the filtered values of the result.
+     * This has to be called after the result is found, since finding it clears the filtered values.
+     *
+     * @param result      the target found in the frame
+     * @param captureTime the time of the frame given by the sink, in microseconds
+     */
+    public void update(TargetResult result, long captureTime) {
+        if (!SETTINGS.enabled) {
+            tracking = false;
+            result.clearTracked();
+            return;
+        }
+
+        double dt = (captureTime - lastTime) / 1e6;
+
+        if (result.seeTarget) {
+            measured[0] = result.centerTotal[0];
+            measured[1] = result.centerTotal[1];
+            measured[2] = result.boundsTotal[0];
+            measured[3] = result.boundsTotal[1];
+
+            for (int i = 0; i < AXES.length; i++) {
+                if (tracking) {
+                    AXES[i].predict(dt, SETTINGS.processNoise);
+                    AXES[i].correct(measured[i], SETTINGS.measurementNoise);
+                } else {
+                    AXES[i].reset(measured[i], SETTINGS.measurementNoise);
+                }
+            }
+
+            tracking = true;
+            misses = 0;
+        } else {
+            coast(dt);
+        }
+
+        lastTime = captureTime;
+        fill(result);
+    }
+
+    /**
+     * Moves the track forward to a frame that was not processed, without taking the last result as a new measurement
+     * of it, and fills in the filtered values of the result. If the last result did not see the target,
+     * the frame counts as another miss.
+     *
+     * @param result      the last result, published again for this frame
+     * @param captureTime the time of the frame given by the sink, in microseconds
+     */
+    public void skip(TargetResult result, long captureTime) {
+        if (!SETTINGS.enabled) {
+            tracking = false;
+            result.clearTracked();
+            return;
+        }
+
+        double dt = (captureTime - lastTime) / 1e6;
+
+        if (!result.seeTarget) {
+            coast(dt);
+        } else if (tracking) {
+            for (Axis axis : AXES)
+                axis.predict(dt, SETTINGS.processNoise);
+        }
+
+        lastTime = captureTime;
+        fill(result);
+    }
+
+    /**
+     * Counts a frame without the target, carrying on with the last velocity until there have been too many.
+     */
+    private void coast(double dt) {
+        if (tracking && ++misses <= SETTINGS.maxCoast) {
+            for (Axis axis : AXES)
+                axis.predict(dt, SETTINGS.processNoise);
+        } else {
+            tracking = false;
+        }
+    }
+
+    /**
+     * Fills in the filtered values of the result, or clears them if the target is not tracked.
+     */
+    private void fill(TargetResult result) {
+        if (!tracking) {
+            result.clearTracked();
+            return;
+        }
+
+        result.tracked = true;
+        result.filteredCenter[0] = AXES[0].position;
+        result.filteredCenter[1] = AXES[1].position;
+        result.filteredBounds[0] = AXES[2].position;
+        result.filteredBounds[1] = AXES[3].position;
+        result.centerVelocity[0] = AXES[0].velocity;
+        result.centerVelocity[1] = AXES[1].velocity;
+        result.boundsVelocity[0] = AXES[2].velocity;
+        result.boundsVelocity[1] = AXES[3].velocity;
+    }
+
+    /**
+     * Position and velocity along one axis, along with their covariance.
+     */
+    private static class Axis {
+        // How unsure a new track is about its velocity, in pixels per second
+        private static final double START_VELOCITY_STD = 200;
+
+        double position, velocity;
+        double p00, p01, p11;
+
+        void reset(double measured, double measurementNoise) {
+            position = measured;
+            velocity = 0;
+            p00 = measurementNoise * measurementNoise;
+            p01 = 0;
+            p11 = START_VELOCITY_STD * START_VELOCITY_STD;
+        }
+
+        /**
+         * Moves the state forward in time, with the acceleration as white noise.
+         */
+        void predict(double dt, double processNoise) {
+            position += velocity * dt;
+
+            double
+                q = processNoise * processNoise,
+                dt2 = dt * dt;
+
+            p00 += dt * (2 * p01 + dt * p11) + q * dt2 * dt2 / 4;
+            p01 += dt * p11 + q * dt2 * dt / 2;
+            p11 += q * dt2;
+        }
+
+        /**
+         * Pulls the state towards a measurement of the position.
+         */
+        void correct(double measured, double measurementNoise) {
+            double
+                s = p00 + measurementNoise * measurementNoise,
+                k0 = p00 / s,
+                k1 = p01 / s,
+                error = measured - position;
+
+            position += k0 * error;
+            velocity += k1 * error;
+
+            p11 -= k1 * p01;
+            p01 -= k0 * p01;
+            p00 -= k0 * p00;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.mercury1089.main;
+
+import org.opencv.core.Mat;
+
+/**
+ * Interface for anything that can turn a BGR frame into a binary mask of the pixels
+ * that fall within a set of HSL bounds. {@link MercPipeline} uses OpenCV's cvtColor and inRange
+ * unless it is given one of these.
+ */
+public interface ThresholdEngine {
+    /**
+     * Sets the bounds to threshold with. Each array is a min and max, in the same ranges as OpenCV's HLS.
+     *
+     * @param hue the min and max hue, from 0 to 180
+     * @param sat the min and max saturation, from 0 to 255
+     * @param lum the min and max luminance, from 0 to 255
+     */
+    public void setBounds(double[] hue, double[] sat, double[] lum);
+
+    /**
+     * Segments a frame, setting every pixel in the output to 255 if it is within the bounds, or 0 if it is not.
+     * This can be called from several threads at once, each on its own part of a frame.
+     *
+     * @param input the BGR frame to threshold
+     * @param out   the {@code Mat} to store the mask in
+     */
+    public void threshold(Mat input, Mat out);
+
+    /**
+     * Creates the engine with the specified name.
+     *
+     * @param name the name of the engine, as found in the config
+     * @return the engine, or null if OpenCV's cvtColor and inRange should be used
+     */
+    public static ThresholdEngine forName(String name) {
+        switch (name) {
+            case "lookup":
+                return new LookupThresholdEngine();
+            case "java":
+                return new JavaThresholdEngine();
+            case "opencv":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown threshold engine: " + name);
+        }
+    }
+}
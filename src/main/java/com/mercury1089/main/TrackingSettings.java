@@ -0,0 +1,16 @@
+package com.mercury1089.main;
+
+/**
+ * This class encapsulates all the settings used when tracking a target that has been found.
+ * This should be used on a per-pipeline basis.
+ */
+public class TrackingSettings {
+	// Whether to only search around the last target once it has been found
+	public boolean enabled = false;
+	// Margin around the last target, as a fraction of its width and height
+	public double margin = 0.5;
+	// Smallest margin around the last target, in pixels
+	public int minMargin = 20;
+	// Frames in a row without a target before searching the full frame again
+	public int maxMisses = 3;
+}
@@ -0,0 +1,414 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.Yuyv;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches for the HSL threshold and contour filter settings that find a target best in a set of frames
+ * labeled with where the target really is, without a camera or network tables.
+ * Every candidate is run through a {@link MercPipeline} and {@link TargetFinder} the same way the vision threads do,
+ * with candidates spread across every core with fork/join. The pipeline is set up by {@link Main#configure},
+ * and the gear camera's frames are turned into YUYV first if it is captured that way.
+ *
+ * <p>Usage: {@code Tuner <labels file> <gearVision or highGoal> [output file]}
+ *
+ * <p>The labels file has a line for every frame: {@code image,x,y,width,height}, with the image relative to the
+ * labels file and the box around the whole target, or just {@code image} if the target is not in it.
+ * Lines starting with # are skipped.
+ *
+ * <p>The search starts from the settings in vision.properties, read the same way as the vision threads read them,
+ * tries random thresholds across the whole range, and then refines the best one and the filter a step at a time.
+ * The best settings are written in the format of vision.properties, so they can be pasted straight into it,
+ * and the threshold can be copied into the robot's preferences.
+ */
+public class Tuner {
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    // A target counts as found if its box overlaps the labeled box by at least this much, as intersection over union
+    private static final double MIN_OVERLAP = 0.5;
+    private static final int RANDOM_CANDIDATES = 512;
+    // Steps are halved whenever no neighbor is better, down to this fraction of their starting size
+    private static final double MIN_SCALE = 1 / 16.0;
+
+    /**
+     * A setting to search, along with its range and the size of the first steps taken when refining it.
+     */
+    private static class Parameter {
+        final String KEY;
+        final double MIN, MAX, STEP;
+
+        Parameter(String key, double min, double max, double step) {
+            KEY = key;
+            MIN = min;
+            MAX = max;
+            STEP = step;
+        }
+    }
+
+    private static final Parameter[] PARAMETERS = {
+        new Parameter("hueMin", 0, 180, 8),
+        new Parameter("hueMax", 0, 180, 8),
+        new Parameter("satMin", 0, 255, 16),
+        new Parameter("satMax", 0, 255, 16),
+        new Parameter("lumMin", 0, 255, 16),
+        new Parameter("lumMax", 0, 255, 16),
+        new Parameter("minArea", 0, 1000, 32),
+        new Parameter("minSolidity", 0, 100, 8),
+        new Parameter("minRatio", 0, 4, 0.25),
+        new Parameter("maxRatio", 0, 20, 1)
+    };
+    // The first parameters are the HSL bounds
+    private static final int HSL_PARAMETERS = 6;
+
+    /**
+     * A frame along with where the target is in it, or null if it is not.
+     */
+    private static class LabeledFrame {
+        final Mat IMAGE;
+        final double[] BOX;
+
+        LabeledFrame(Mat image, double[] box) {
+            IMAGE = image;
+            BOX = box;
+        }
+    }
+
+    /**
+     * Everything a thread needs to score candidates, since pipelines and finders cannot be shared between threads.
+     */
+    private static class Evaluator {
+        final MercPipeline PIPELINE = new MercPipeline(MercPipeline.DEFAULT_THRESHOLD, new FilterContourSettings());
+        final TargetFinder FINDER = new TargetFinder(pairing);
+        final TargetResult RESULT = new TargetResult();
+
+        Evaluator() {
+            Main.configure(PIPELINE);
+            if (yuyv)
+                PIPELINE.setThresholdEngine(new YuyvThresholdEngine());
+        }
+    }
+
+    // How the target being tuned is paired up, and whether its frames are YUYV, set before any evaluator is made
+    private static PairingSettings pairing;
+    private static boolean yuyv;
+
+    private static final ThreadLocal<Evaluator> EVALUATORS = ThreadLocal.withInitial(Evaluator::new);
+
+    /**
+     * Scores a range of candidates, splitting it in half until there is one candidate per task.
+     */
+    private static class Evaluate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<LabeledFrame> FRAMES;
+        private final PipelineSettings[] CANDIDATES;
+        private final double[] SCORES;
+        private final int FROM, TO;
+
+        Evaluate(List<LabeledFrame> frames, PipelineSettings[] candidates, double[] scores, int from, int to) {
+            FRAMES = frames;
+            CANDIDATES = candidates;
+            SCORES = scores;
+            FROM = from;
+            TO = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (TO - FROM == 1) {
+                SCORES[FROM] = score(FRAMES, CANDIDATES[FROM]);
+                return;
+            }
+
+            int middle = (FROM + TO) >>> 1;
+            invokeAll(
+                new Evaluate(FRAMES, CANDIDATES, SCORES, FROM, middle),
+                new Evaluate(FRAMES, CANDIDATES, SCORES, middle, TO)
+            );
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !("gearVision".equals(args[1]) || "highGoal".equals(args[1]))) {
+            System.out.println("Usage: Tuner <labels file> <gearVision or highGoal> [output file]");
+            return;
+        }
+
+        String
+            target = args[1],
+            thresholdKey = "gearVision".equals(target) ? "hslThresholdPi" : "hslThresholdLifeCam",
+            output = args.length > 2 ? args[2] : "tuned.properties";
+
+        // Only the gear camera is ever captured in YUYV
+        yuyv = "gearVision".equals(target) && "yuyv".equals(VisionConfig.getProperty("capture", "bgr"));
+        List<LabeledFrame> frames = readLabels(new File(args[0]));
+        pairing = PairingSettings.forTarget(target);
+
+        PipelineSettings best = new PipelineSettings(MercPipeline.DEFAULT_THRESHOLD, new FilterContourSettings())
+            .withConfig(target, thresholdKey);
+        double bestScore = evaluate(frames, new PipelineSettings[] {best})[0];
+        System.out.println(String.format("Starting from %s", describe(frames, bestScore)));
+
+        long start = System.nanoTime();
+        int evaluated = 1;
+
+        // Look at thresholds everywhere first, in case the starting point finds nothing at all to refine
+        Random random = new Random(1089);
+        PipelineSettings[] candidates = new PipelineSettings[RANDOM_CANDIDATES];
+
+        for (int i = 0; i < candidates.length; i++)
+            candidates[i] = randomCandidate(best, random);
+
+        double[] scores = evaluate(frames, candidates);
+        evaluated += candidates.length;
+
+        for (int i = 0; i < candidates.length; i++) {
+            if (scores[i] > bestScore) {
+                best = candidates[i];
+                bestScore = scores[i];
+            }
+        }
+
+        System.out.println(String.format("After %d random candidates: %s", candidates.length, describe(frames, bestScore)));
+
+        // Then step each setting up and down from the best one, taking smaller steps once no step helps
+        for (double scale = 1; scale >= MIN_SCALE; ) {
+            candidates = neighbors(best, scale);
+            scores = evaluate(frames, candidates);
+            evaluated += candidates.length;
+
+            int bestNeighbor = -1;
+            for (int i = 0; i < candidates.length; i++)
+                if (scores[i] > bestScore && (bestNeighbor == -1 || scores[i] > scores[bestNeighbor]))
+                    bestNeighbor = i;
+
+            if (bestNeighbor == -1) {
+                scale /= 2;
+            } else {
+                best = candidates[bestNeighbor];
+                bestScore = scores[bestNeighbor];
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        String summary = String.format("# Tuned on %s, %d candidates in %.1f s on %d threads",
+            describe(frames, bestScore), evaluated, seconds, ForkJoinPool.getCommonPoolParallelism());
+        System.out.println(summary);
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(output)))) {
+            double[] threshold = best.threshold();
+            FilterContourSettings filter = best.filter();
+
+            out.println(summary);
+            out.println(thresholdKey + "=" + threshold[0] + "," + threshold[1] + "," + threshold[2] + ","
+                + threshold[3] + "," + threshold[4] + "," + threshold[5]);
+            out.println(target + ".minArea=" + filter.minArea);
+            out.println(target + ".minSolidity=" + filter.solidity[0]);
+            out.println(target + ".minRatio=" + filter.minRatio);
+            out.println(target + ".maxRatio=" + filter.maxRatio);
+        }
+
+        System.out.println("Wrote " + output);
+    }
+
+    /**
+     * Scores every candidate in parallel.
+     *
+     * @return the score of each candidate
+     */
+    private static double[] evaluate(List<LabeledFrame> frames, PipelineSettings[] candidates) {
+        double[] scores = new double[candidates.length];
+
+        if (candidates.length > 0)
+            ForkJoinPool.commonPool().invoke(new Evaluate(frames, candidates, scores, 0, candidates.length));
+
+        return scores;
+    }
+
+    /**
+     * Scores a candidate by the number of frames it gets right: the target is found where it is labeled,
+     * or nothing is found if there is no label. Ties are broken by how well the found targets overlap their labels,
+     * which adds less than 1 in total.
+     */
+    private static double score(List<LabeledFrame> frames, PipelineSettings candidate) {
+        Evaluator evaluator = EVALUATORS.get();
+        evaluator.PIPELINE.setSettings(candidate);
+
+        int correct = 0;
+        double overlapSum = 0;
+
+        for (LabeledFrame frame : frames) {
+            TargetResult result = evaluator.RESULT;
+
+            evaluator.PIPELINE.process(frame.IMAGE);
+            evaluator.FINDER.find(evaluator.PIPELINE, result);
+
+            if (frame.BOX == null) {
+                if (!result.seeTarget)
+                    correct++;
+            } else if (result.seeTarget) {
+                double overlap = overlap(result, frame.BOX);
+                overlapSum += overlap;
+
+                if (overlap >= MIN_OVERLAP)
+                    correct++;
+            }
+        }
+
+        return correct + overlapSum / (frames.size() + 1);
+    }
+
+    /**
+     * @return the intersection over union of the target that was found and the labeled box
+     */
+    private static double overlap(TargetResult result, double[] box) {
+        double
+            left = result.centerTotal[0] - result.boundsTotal[0] / 2,
+            top = result.centerTotal[1] - result.boundsTotal[1] / 2,
+            width = Math.max(0, Math.min(left + result.boundsTotal[0], box[0] + box[2]) - Math.max(left, box[0])),
+            height = Math.max(0, Math.min(top + result.boundsTotal[1], box[1] + box[3]) - Math.max(top, box[1])),
+            intersection = width * height,
+            union = result.boundsTotal[0] * result.boundsTotal[1] + box[2] * box[3] - intersection;
+
+        return union <= 0 ? 0 : intersection / union;
+    }
+
+    /**
+     * @return the base with random HSL bounds. The filter is left alone, since a random filter
+     *         almost always throws the target out, whatever the threshold.
+     */
+    private static PipelineSettings randomCandidate(PipelineSettings base, Random random) {
+        PipelineSettings candidate = base;
+
+        for (int i = 0; i < HSL_PARAMETERS; i++) {
+            Parameter parameter = PARAMETERS[i];
+            double value = Math.round(random.nextDouble() * (parameter.MAX - parameter.MIN) / parameter.STEP) * parameter.STEP;
+            candidate = candidate.with(parameter.KEY, Math.min(parameter.MAX, parameter.MIN + value));
+        }
+
+        return ordered(candidate);
+    }
+
+    /**
+     * @return the settings one step up and down from the base in each parameter, skipping any that fall out of range
+     */
+    private static PipelineSettings[] neighbors(PipelineSettings base, double scale) {
+        List<PipelineSettings> neighbors = new ArrayList<>();
+
+        for (Parameter parameter : PARAMETERS) {
+            double value = get(base, parameter.KEY);
+
+            for (int direction = -1; direction <= 1; direction += 2) {
+                double next = value + direction * parameter.STEP * scale;
+
+                if (next >= parameter.MIN && next <= parameter.MAX)
+                    neighbors.add(ordered(base.with(parameter.KEY, next)));
+            }
+        }
+
+        return neighbors.toArray(new PipelineSettings[neighbors.size()]);
+    }
+
+    /**
+     * Swaps any min and max that ended up the wrong way around.
+     */
+    private static PipelineSettings ordered(PipelineSettings settings) {
+        for (String[] pair : new String[][] {{"hueMin", "hueMax"}, {"satMin", "satMax"}, {"lumMin", "lumMax"}, {"minRatio", "maxRatio"}}) {
+            double min = get(settings, pair[0]), max = get(settings, pair[1]);
+
+            if (min > max)
+                settings = settings.with(pair[0], max).with(pair[1], min);
+        }
+
+        return settings;
+    }
+
+    private static double get(PipelineSettings settings, String key) {
+        double[] threshold = settings.threshold();
+        FilterContourSettings filter = settings.filter();
+
+        switch (key) {
+            case "hueMin": return threshold[0];
+            case "hueMax": return threshold[1];
+            case "satMin": return threshold[2];
+            case "satMax": return threshold[3];
+            case "lumMin": return threshold[4];
+            case "lumMax": return threshold[5];
+            case "minArea": return filter.minArea;
+            case "minSolidity": return filter.solidity[0];
+            case "minRatio": return filter.minRatio;
+            case "maxRatio": return filter.maxRatio;
+            default: throw new IllegalArgumentException("Unknown parameter: " + key);
+        }
+    }
+
+    private static String describe(List<LabeledFrame> frames, double score) {
+        return String.format("%d of %d frames right", (int)score, frames.size());
+    }
+
+    /**
+     * Reads the labels file and every frame in it.
+     *
+     * @throws IllegalArgumentException if a line is not in the right format or a frame cannot be read
+     */
+    private static List<LabeledFrame> readLabels(File labels) throws IOException {
+        List<LabeledFrame> frames = new ArrayList<>();
+        File directory = labels.getAbsoluteFile().getParentFile();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(labels))) {
+            String line;
+            int number = 0;
+
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split(",");
+                if (parts.length != 1 && parts.length != 5)
+                    throw new IllegalArgumentException(labels + ":" + number + ": expected image,x,y,width,height or image");
+
+                File file = new File(parts[0].trim());
+                if (!file.isAbsolute())
+                    file = new File(directory, parts[0].trim());
+
+                Mat image = Imgcodecs.imread(file.getPath());
+                if (image.empty())
+                    throw new IllegalArgumentException(labels + ":" + number + ": could not read " + parts[0].trim());
+
+                if (yuyv) {
+                    Mat converted = new Mat();
+                    Yuyv.fromBgr(image, converted);
+                    image.release();
+                    image = converted;
+                }
+
+                double[] box = null;
+                if (parts.length == 5) {
+                    box = new double[4];
+                    for (int i = 0; i < 4; i++)
+                        box[i] = Double.parseDouble(parts[i + 1].trim());
+                }
+
+                frames.add(new LabeledFrame(image, box));
+            }
+        }
+
+        if (frames.isEmpty())
+            throw new IllegalArgumentException(labels + " has no frames");
+
+        return frames;
+    }
+}
@@ -1,34 +1,133 @@
 package com.mercury1089.main;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class that sets up a simple config for vision processing.
  * This is basically a wrapper for a {@link Properties} object.
  * Inside are three fields used for easy access: fps, resX, and resY.
- * If you want more fields, make your own properties file.
+ * Anything else can be read with {@link #getProperty(String, String)}.
+ * The file can be watched with {@link #watch(Runnable)}, which reloads it whenever it changes.
  */
 public class VisionConfig {
-    private static final Properties PROP;
+    private static final File FILE = new File("vision.properties");
+    private static final long POLL_MILLIS = 1000;
 
-    public static int resX, resY, fps;
+    // Replaced as a whole on every reload, so readers always see one version of the file
+    private static volatile Properties prop = new Properties();
+
+    public static int resX = 320, resY = 240, fps = 15;
 
     static {
-        PROP = new Properties();
         try {
-            FileReader reader;
-
-            reader = new FileReader("vision.properties");
-            PROP.load(reader);
-            reader.close();
+            prop = load();
 
-            fps = Integer.parseInt(PROP.getProperty("fps", "15"));
-            resX = Integer.parseInt(PROP.getProperty("resolution_width", "320"));
-            resY = Integer.parseInt(PROP.getProperty("resolution_height", "240"));
+            fps = Integer.parseInt(prop.getProperty("fps", "15"));
+            resX = Integer.parseInt(prop.getProperty("resolution_width", "320"));
+            resY = Integer.parseInt(prop.getProperty("resolution_height", "240"));
 
+        } catch (FileNotFoundException e) {
+            System.out.println("No vision.properties found, using defaults");
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Gets a value from vision.properties.
+     *
+     * @param key the key of the value
+     * @param def the value to use if the key is not in the file
+     * @return the value of the key, or the default value
+     */
+    public static String getProperty(String key, String def) {
+        return prop.getProperty(key, def);
+    }
+
+    /**
+     * Gets a number from vision.properties.
+     *
+     * @param key the key of the number
+     * @param def the number to use if the key is not in the file
+     * @return the number, or the default
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public static double getNumber(String key, double def) {
+        String value = getProperty(key, null);
+        return value == null ? def : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * Gets a comma separated list of numbers from vision.properties.
+     *
+     * @param key the key of the list
+     * @return the numbers, or null if the key is not in the file
+     * @throws IllegalArgumentException if any of the values is not a number
+     */
+    public static double[] getNumbers(String key) {
+        String value = getProperty(key, null);
+        if (value == null)
+            return null;
+
+        String[] parts = value.split(",");
+        double[] numbers = new double[parts.length];
+
+        for (int i = 0; i < parts.length; i++)
+            numbers[i] = Double.parseDouble(parts[i].trim());
+
+        return numbers;
+    }
+
+    /**
+     * Checks vision.properties for changes once a second, reloading it and calling the listener whenever it changes.
+     * fps, resX and resY are not changed by a reload, since the cameras are only set up once.
+     * If the listener throws, the file read before is put back, so the listener should check everything
+     * it reads before changing anything.
+     *
+     * @param listener what to call after the file is reloaded, on the thread watching it
+     */
+    public static void watch(Runnable listener) {
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VisionConfig-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long[] lastModified = {FILE.lastModified()};
+
+        watcher.scheduleWithFixedDelay(() -> {
+            long modified = FILE.lastModified();
+            if (modified == lastModified[0])
+                return;
+
+            lastModified[0] = modified;
+
+            // A bad edit is logged and the old file stays, and it does not stop the file from being watched
+            Properties old = prop;
+            try {
+                prop = modified == 0 ? new Properties() : load();
+                listener.run();
+            } catch (Exception e) {
+                prop = old;
+                e.printStackTrace();
+            }
+        }, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static Properties load() throws IOException {
+        Properties properties = new Properties();
+
+        try (FileReader reader = new FileReader(FILE)) {
+            properties.load(reader);
+        }
+
+        return properties;
+    }
 }
@@ -0,0 +1,64 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.DemandStream;
+import com.mercury1089.vision.FrameMetrics;
+import com.mercury1089.vision.FrameRecorder;
+import com.mercury1089.vision.FrameSource;
+import com.mercury1089.vision.MatPool;
+import com.mercury1089.vision.MotionGate;
+import edu.wpi.first.wpilibj.networktables.NetworkTable;
+import org.opencv.core.Mat;
+
+/**
+ * This class creates a {@link Thread} capable of processing the input of a video feed and output contour values
+ * to a network table.
+ */
+public class VisionThread extends Thread {
+    /**
+     * Creates a new {@link Thread} named "VisionThread-name" with a {@link Runnable} fit for processing
+     * the input from the specified {@link FrameSource} using the specified {@link MercPipeline}
+     * and output a processed image with contours drawn on into the specified {@link DemandStream}, while it is watched,
+     * as well as into the specified {@link NetworkTable}.
+     *
+     * @param sink the input feed to get an image from to process
+     * @param outputFeed the output feed to output the processed frame, whenever it wants one
+     * @param pipeline the pipeline to use to process the image
+     * @param trackingSettings the settings for only searching around a target once it is found
+     * @param predictionSettings the settings for smoothing and predicting the motion of the target
+     * @param pairingSettings the expected geometry of the target, to pick it out of everything found
+     * @param table the network table to output metrics to
+     * @param publisher the publisher to output values with
+     * @param metrics the metrics to time each stage with, published to the "metrics" sub table
+     * @param recorder the recorder to record each frame and what was found in it with, or null to not record
+     * @param gate the gate to skip processing frames that have not changed with, or null to process every frame
+     * @param pose the estimator to work out where the target is with, or null to only publish where it is in the frame
+     * @param name the name of the vision to append to the prefix
+     */
+    public VisionThread(FrameSource sink, DemandStream outputFeed, MercPipeline pipeline, TrackingSettings trackingSettings, PredictionSettings predictionSettings, PairingSettings pairingSettings, NetworkTable table, TargetPublisher publisher, FrameMetrics<FrameStage> metrics, FrameRecorder recorder, MotionGate gate, PoseEstimator pose, String name) {
+        super (() -> {
+            // All Mats and Lists should be stored outside the loop to avoid allocations
+            // as they are expensive to create. The frame comes from the shared pool so its memory is counted.
+            Mat img = MatPool.SHARED.borrow(Main.RES_Y, Main.RES_X, sink.frameType());
+            FrameProcessor processor = new FrameProcessor(outputFeed, pipeline, trackingSettings, predictionSettings, pairingSettings, table, publisher, metrics, recorder, gate, pose);
+            long sequence = 0;
+
+            // Infinitely process image
+            while (!Thread.interrupted() && !sink.isFinished()) {
+                // Grab a frame. If it has a frame time of 0, there was an error.
+                // Just skip and continue
+                long time = System.nanoTime();
+                long captureTime = sink.grabFrame(img);
+                if (captureTime == 0) {
+                    System.out.println(Thread.currentThread().getName() + ": " + sink.getError());
+                    continue;
+                }
+
+                metrics.recordSince(FrameStage.GRAB_WAIT, time);
+                processor.process(img, ++sequence, captureTime);
+            }
+
+            processor.release();
+            MatPool.SHARED.giveBack(img);
+        }, "VisionThread-" + name);
+    }
+}
@@ -0,0 +1,38 @@
+package com.mercury1089.main;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/**
+ * A view of part of a frame, kept from one frame to the next while the frame's buffer and the part stay the same,
+ * so that working on part of a frame does not allocate a new view every frame.
+ * Holding the view keeps the buffer it was made from alive, so a new buffer never shows up at the same address.
+ */
+class WindowView {
+	private Mat view = null;
+	private long data = 0;
+	private int cols = 0;
+	private final Rect rect = new Rect();
+
+	/**
+	 * @param frame  the frame to view part of
+	 * @param window the part of the frame to view
+	 * @return the view, which is only good until the next call
+	 */
+	Mat of(Mat frame, Rect window) {
+		if (view == null || frame.dataAddr() != data || frame.cols() != cols || !rect.equals(window)) {
+			if (view != null)
+				view.release();
+
+			view = frame.submat(window);
+			data = frame.dataAddr();
+			cols = frame.cols();
+			rect.x = window.x;
+			rect.y = window.y;
+			rect.width = window.width;
+			rect.height = window.height;
+		}
+
+		return view;
+	}
+}
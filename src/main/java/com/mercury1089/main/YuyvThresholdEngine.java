@@ -0,0 +1,183 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.Yuyv;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link ThresholdEngine} for frames grabbed straight from the camera in YUYV, which thresholds them without ever
+ * converting them to BGR or HLS. The HSL bounds are turned into a table of quantized YUV colors, each bit of which
+ * says whether that color, converted to BGR the way OpenCV would, falls within the bounds.
+ * Like {@link LookupThresholdEngine}, the table is rebuilt on a background thread whenever the bounds change.
+ *
+ * <p>The two pixels of a pair share their chroma, so a part of a frame that starts or ends partway through a pair,
+ * such as a search window, reads the chroma from the pixel just outside it.
+ */
+public class YuyvThresholdEngine implements ThresholdEngine {
+    public static final int DEFAULT_BITS = 6;
+
+    private final int BITS, SHIFT;
+
+    private final AtomicReference<double[]> pendingBounds = new AtomicReference<>();
+    private volatile long[] table;
+
+    /**
+     * Arrays reused between frames by one thread.
+     */
+    private static class Buffers {
+        byte[] pixels = new byte[0], mask = new byte[0];
+        final Size wholeSize = new Size();
+        final Point offset = new Point();
+    }
+
+    // Each thread has its own, so bands of a frame can be thresholded at once
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    public YuyvThresholdEngine() {
+        this(DEFAULT_BITS);
+    }
+
+    /**
+     * @param bits the number of bits kept from each of Y, U and V, from 1 to 8.
+     *             The table takes 2^(3 * bits) bits, so 6 is 32 KB and 8 is 2 MB.
+     */
+    public YuyvThresholdEngine(int bits) {
+        if (bits < 1 || bits > 8)
+            throw new IllegalArgumentException("bits must be from 1 to 8, got " + bits);
+
+        BITS = bits;
+        SHIFT = 8 - bits;
+    }
+
+    @Override
+    public void setBounds(double[] hue, double[] sat, double[] lum) {
+        double[] bounds = {hue[0], hue[1], sat[0], sat[1], lum[0], lum[1]};
+
+        // There has to be a table before the first frame, so build that one right away
+        if (table == null) {
+            table = buildTable(bounds);
+            return;
+        }
+
+        // Only the latest bounds matter, so any bounds that were not built yet are replaced
+        if (pendingBounds.getAndSet(bounds) == null)
+            LookupThresholdEngine.BUILDER.execute(this::rebuild);
+    }
+
+    private void rebuild() {
+        double[] bounds = pendingBounds.getAndSet(null);
+
+        if (bounds != null)
+            table = buildTable(bounds);
+    }
+
+    /**
+     * Segments a YUYV frame.
+     *
+     * @param input the YUYV frame to threshold, or part of one
+     * @param out   the {@code Mat} to store the mask in
+     * @throws IllegalArgumentException if the frame is not YUYV
+     */
+    @Override
+    public void threshold(Mat input, Mat out) {
+        long[] lut = table;
+
+        if (lut == null)
+            throw new IllegalStateException("setBounds has to be called before threshold");
+        if (!Yuyv.isYuyv(input))
+            throw new IllegalArgumentException("Expected a YUYV frame, got type " + CvType.typeToString(input.type()));
+
+        Buffers buffers = this.buffers.get();
+        input.locateROI(buffers.wholeSize, buffers.offset);
+
+        int
+            rows = input.rows(),
+            cols = input.cols(),
+            left = (int)buffers.offset.x,
+            // Widen the part read to whole pairs, so every pixel has both of its chroma values
+            padLeft = left & 1,
+            padRight = (left + cols) & 1,
+            width = cols + padLeft + padRight;
+
+        Mat read = input;
+        if (padLeft + padRight != 0) {
+            read = input.submat(0, rows, 0, cols);
+            read.adjustROI(0, 0, padLeft, padRight);
+        }
+
+        // Only ever grown, since a tracking window changes size from frame to frame.
+        // get and put only copy as much as the frame holds.
+        if (buffers.pixels.length < rows * width * 2)
+            buffers.pixels = new byte[rows * width * 2];
+        if (buffers.mask.length < rows * cols)
+            buffers.mask = new byte[rows * cols];
+
+        byte[]
+            pixels = buffers.pixels,
+            mask = buffers.mask;
+
+        out.create(rows, cols, CvType.CV_8UC1);
+        read.get(0, 0, pixels);
+        if (read != input)
+            read.release();
+
+        int shift = SHIFT, bits = BITS;
+
+        for (int row = 0, i = 0; row < rows; row++) {
+            // Position of the first pixel of the row within the pixels read, which always starts a pair
+            int start = row * width * 2 + padLeft * 2;
+
+            for (int col = 0; col < cols; col++, i++) {
+                int
+                    p = start + col * 2,
+                    // The start of the pair the pixel is in
+                    pair = p - ((col + padLeft) & 1) * 2,
+                    index =
+                        ((pixels[p] & 0xFF) >>> shift) << (bits * 2) |
+                        ((pixels[pair + 1] & 0xFF) >>> shift) << bits |
+                        ((pixels[pair + 3] & 0xFF) >>> shift);
+
+                // Either 0 or -1, which is 255 as an unsigned byte
+                mask[i] = (byte)-((lut[index >>> 6] >>> index) & 1);
+            }
+        }
+
+        out.put(0, 0, mask);
+    }
+
+    /**
+     * Builds a table with a bit for every quantized YUV color. Each color is tested at the center of its bin.
+     */
+    private long[] buildTable(double[] bounds) {
+        int
+            levels = 1 << BITS,
+            half = SHIFT == 0 ? 0 : 1 << (SHIFT - 1);
+
+        long[] lut = new long[Math.max(1, (levels * levels * levels) >>> 6)];
+        int[]
+            bgr = new int[3],
+            hls = new int[3];
+
+        for (int y = 0; y < levels; y++) {
+            for (int u = 0; u < levels; u++) {
+                for (int v = 0; v < levels; v++) {
+                    Yuyv.toBgr((y << SHIFT) | half, (u << SHIFT) | half, (v << SHIFT) | half, bgr);
+                    LookupThresholdEngine.bgrToHls(bgr[0], bgr[1], bgr[2], hls);
+
+                    if (hls[0] >= bounds[0] && hls[0] <= bounds[1] &&
+                        hls[2] >= bounds[2] && hls[2] <= bounds[3] &&
+                        hls[1] >= bounds[4] && hls[1] <= bounds[5]) {
+                        int index = (y << (BITS * 2)) | (u << BITS) | v;
+                        lut[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+
+        return lut;
+    }
+}
@@ -0,0 +1,134 @@
+package com.mercury1089.vision;
+
+import edu.wpi.cscore.CvSource;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output feed that only wants frames while someone is watching it, and then only at its own frame rate and scale.
+ * Annotating and encoding a frame is a large share of the work done for every frame,
+ * so it should be skipped whenever {@link #wantsFrame()} says so.
+ *
+ * <p>cscore has no way of telling how many clients a stream has, so the TCP connections to its port
+ * are checked in /proc/net/tcp twice a second. Where that cannot be read, every frame is wanted.
+ */
+public class DemandStream {
+    private static final String[] CONNECTION_TABLES = {"/proc/net/tcp", "/proc/net/tcp6"};
+    // State of an established connection in the connection tables
+    private static final String ESTABLISHED = "01";
+    private static final long POLL_MILLIS = 500;
+
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DemandStream-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CvSource SOURCE;
+    private final int PORT;
+    private final long PERIOD;
+    private final double SCALE;
+
+    private final Mat scaled = new Mat();
+    private final Size scaledSize = new Size();
+
+    private volatile boolean watched = true;
+    private long lastFrame = 0;
+
+    /**
+     * @param source the feed to put frames into
+     * @param port   the port of the server streaming the feed
+     * @param fps    the most frames per second to stream, or 0 to stream every frame
+     * @param scale  how much to scale frames by before streaming them
+     */
+    public DemandStream(CvSource source, int port, double fps, double scale) {
+        SOURCE = source;
+        PORT = port;
+        PERIOD = fps > 0 ? (long)(1e9 / fps) : 0;
+        SCALE = scale;
+
+        POLLER.scheduleWithFixedDelay(this::poll, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks if the next frame should be annotated and streamed.
+     * Once this returns true, the frame counts against the frame rate, so it should be put.
+     *
+     * @return true if a client is watching and it is time for another frame
+     */
+    public boolean wantsFrame() {
+        if (!watched)
+            return false;
+
+        long now = System.nanoTime();
+        if (lastFrame != 0 && now - lastFrame < PERIOD)
+            return false;
+
+        lastFrame = now;
+        return true;
+    }
+
+    /**
+     * Scales a frame and puts it into the feed.
+     *
+     * @param image the frame to stream
+     */
+    public void putFrame(Mat image) {
+        if (SCALE == 1) {
+            SOURCE.putFrame(image);
+            return;
+        }
+
+        scaledSize.width = Math.round(image.cols() * SCALE);
+        scaledSize.height = Math.round(image.rows() * SCALE);
+        Imgproc.resize(image, scaled, scaledSize, 0, 0, Imgproc.INTER_AREA);
+        SOURCE.putFrame(scaled);
+    }
+
+    private void poll() {
+        boolean found = false, checked = false;
+
+        for (String table : CONNECTION_TABLES) {
+            try {
+                found |= hasConnection(table);
+                checked = true;
+            } catch (IOException e) {
+                // Not every system has both tables
+            }
+        }
+
+        // If nothing could be checked, always stream
+        watched = found || !checked;
+    }
+
+    /**
+     * Looks for an established connection to the port. Each line of the table looks like:
+     * {@code sl local_address:port rem_address:port st ...}, with the port and state in hex.
+     */
+    private boolean hasConnection(String table) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(table))) {
+            // Skip the header
+            String line = reader.readLine();
+
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 4 || !ESTABLISHED.equals(fields[3]))
+                    continue;
+
+                String local = fields[1];
+                if (Integer.parseInt(local.substring(local.lastIndexOf(':') + 1), 16) == PORT)
+                    return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,24 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+
+/**
+ * A single frame passed between processing stages, along with what was found in it.
+ *
+ * @param <R> the type of result the pipeline produces
+ */
+public class Frame<R> {
+    public final Mat image = new Mat();
+    public final R result;
+
+    // Frame time given by the sink, in microseconds
+    public long captureTime;
+    // System.nanoTime() when the frame was grabbed
+    public long grabNanos;
+    // Counts up by one for every frame grabbed
+    public long sequence;
+
+    public Frame(R result) {
+        this.result = result;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mercury1089.vision;
+
+import edu.wpi.first.wpilibj.tables.ITable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link LatencyHistogram} for every stage of processing a frame and periodically publishes
+ * their percentiles, along with the effective frame rate, to a network table.
+ * Every stage can be recorded from a different thread, but only one thread should publish.
+ *
+ * @param <S> the enum listing the stages
+ */
+public class FrameMetrics<S extends Enum<S>> {
+    private final S[] STAGES;
+    private final LatencyHistogram[] HISTOGRAMS;
+    private final double[][] VALUES;
+    private final long PERIOD;
+
+    private final AtomicLong frames = new AtomicLong();
+    private long lastPublish = System.nanoTime();
+
+    /**
+     * @param stages the enum listing the stages
+     * @param periodMillis how often to publish, in milliseconds
+     */
+    public FrameMetrics(Class<S> stages, long periodMillis) {
+        STAGES = stages.getEnumConstants();
+        HISTOGRAMS = new LatencyHistogram[STAGES.length];
+        VALUES = new double[STAGES.length][4];
+        PERIOD = periodMillis * 1000000;
+
+        for (int i = 0; i < HISTOGRAMS.length; i++)
+            HISTOGRAMS[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param stage the stage
+     * @param nanos how long it took, in nanoseconds
+     */
+    public void record(S stage, long nanos) {
+        HISTOGRAMS[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records how long a stage took, from a start time up until now.
+     *
+     * @param stage the stage
+     * @param startNanos when the stage started, from {@link System#nanoTime()}
+     * @return the current time, so it can be used as the start of the next stage
+     */
+    public long recordSince(S stage, long startNanos) {
+        long now = System.nanoTime();
+        record(stage, now - startNanos);
+        return now;
+    }
+
+    /**
+     * Counts a frame that made it all the way through.
+     */
+    public void frameDone() {
+        frames.incrementAndGet();
+    }
+
+    /**
+     * Publishes if the period has passed since the last time.
+     * Each stage is put as an array of its p50, p95, p99 and max in milliseconds, and
+     * "fps" is the number of frames done per second over the period.
+     *
+     * @param table the table to publish to
+     */
+    public void publishIfDue(ITable table) {
+        long now = System.nanoTime();
+        if (now - lastPublish < PERIOD)
+            return;
+
+        double seconds = (now - lastPublish) / 1e9;
+        lastPublish = now;
+
+        for (int i = 0; i < STAGES.length; i++) {
+            LatencyHistogram histogram = HISTOGRAMS[i];
+            double[] values = VALUES[i];
+
+            histogram.takeSnapshot();
+            values[0] = histogram.percentile(50) / 1e6;
+            values[1] = histogram.percentile(95) / 1e6;
+            values[2] = histogram.percentile(99) / 1e6;
+            values[3] = histogram.max() / 1e6;
+
+            table.putNumberArray(STAGES[i].toString(), values);
+        }
+
+        table.putNumber("fps", frames.getAndSet(0) / seconds);
+    }
+}
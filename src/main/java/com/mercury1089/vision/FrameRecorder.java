@@ -0,0 +1,351 @@
+package com.mercury1089.vision;
+
+import edu.wpi.first.wpilibj.tables.ITable;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records frames, along with what was found in them, into a ring file of a fixed size, overwriting the oldest
+ * frames once it is full. The file is memory mapped, and everything but copying the frame out of its
+ * {@link Mat} happens on the recorder's own thread, so recording never blocks the vision thread.
+ * If the recorder falls behind, frames are dropped and counted instead.
+ * A recording can be played back with {@link RecordingSource}.
+ *
+ * <p>The file starts with a header of {@value #HEADER_SIZE} bytes:
+ * magic, version (ints), capacity, offset of the oldest frame, offset to write the next frame at,
+ * and number of frames (longs). Each frame is then:
+ * magic, length of the entry in bytes (ints), sequence, capture time (longs), format, rows, columns, type,
+ * number of values (ints), the values (doubles), the number of bytes of image data (int), and the image data.
+ * A frame that does not fit before the end of the file goes at the start, after a 0 where it would have gone.
+ */
+public class FrameRecorder {
+    /**
+     * How frames are stored.
+     */
+    public enum Format {
+        /**
+         * The pixels as they are, which takes no time but the most space.
+         */
+        RAW,
+        /**
+         * Compressed to a JPEG on the recorder's thread. YUYV frames are converted to BGR first.
+         */
+        JPEG
+    }
+
+    static final int
+        MAGIC = 0x4D524543,
+        ENTRY_MAGIC = 0x46524D45,
+        VERSION = 1,
+        HEADER_SIZE = 48,
+        ENTRY_HEADER_SIZE = 44;
+
+    // Offsets of the values in the header
+    static final int
+        CAPACITY = 8,
+        HEAD = 16,
+        TAIL = 24,
+        COUNT = 32;
+
+    // Frames that can be waiting to be written at once
+    private static final int SLOTS = 4;
+    private static final int JPEG_QUALITY = 80;
+
+    /**
+     * A frame waiting to be written.
+     */
+    public static class Slot {
+        private byte[] pixels = new byte[0];
+        private double[] values = new double[0];
+        private int rows, cols, type;
+        private long sequence, captureTime;
+
+        /**
+         * Copies the pixels of a frame into the slot. This is the only part of recording that takes any time
+         * on the calling thread, so it should be done right after the frame is grabbed, before it is drawn on.
+         *
+         * @param image the frame to record
+         */
+        public void copyFrame(Mat image) {
+            rows = image.rows();
+            cols = image.cols();
+            type = image.type();
+
+            int size = (int)(image.total() * image.elemSize());
+            if (pixels.length != size)
+                pixels = new byte[size];
+
+            image.get(0, 0, pixels);
+        }
+    }
+
+    private final MappedByteBuffer BUFFER;
+    private final long CAPACITY_BYTES;
+    private final Format FORMAT;
+
+    private final BlockingQueue<Slot>
+        free = new ArrayBlockingQueue<>(SLOTS),
+        full = new ArrayBlockingQueue<>(SLOTS);
+
+    private final Thread WRITER;
+
+    // Only changed by the writer thread
+    private long head, tail, count;
+    private volatile long recorded = 0;
+    // Only changed by the writer thread, for frames too big to fit in the file at all
+    private volatile long tooLarge = 0;
+    // Only changed by the thread recording, for frames that came while the recorder was behind
+    private volatile long dropped = 0;
+
+    // Reused by the writer thread
+    private final Mat
+        image = new Mat(),
+        bgr = new Mat();
+    private final MatOfByte encoded = new MatOfByte();
+    private final MatOfInt encodeParams = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, JPEG_QUALITY);
+    private byte[] data = new byte[0];
+
+    /**
+     * Opens a ring file, carrying on after the frames already in it if it is a recording of the same size,
+     * or starting a new one if not. The file is grown to its full size right away.
+     *
+     * @param file     the file to record to
+     * @param capacity the size of the file in bytes
+     * @param format   how to store frames
+     * @param name     the name of the recorder's thread
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public FrameRecorder(File file, long capacity, Format format, String name) throws IOException {
+        if (capacity <= HEADER_SIZE || capacity > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("capacity must be more than " + HEADER_SIZE + " bytes and less than 2 GB, got " + capacity);
+
+        CAPACITY_BYTES = capacity;
+        FORMAT = format;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean resume = raf.length() == capacity;
+            raf.setLength(capacity);
+            BUFFER = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+            resume &= BUFFER.getInt(0) == MAGIC && BUFFER.getInt(4) == VERSION && BUFFER.getLong(CAPACITY) == capacity;
+
+            if (resume) {
+                head = BUFFER.getLong(HEAD);
+                tail = BUFFER.getLong(TAIL);
+                count = BUFFER.getLong(COUNT);
+            } else {
+                head = tail = HEADER_SIZE;
+                count = 0;
+                BUFFER.putInt(0, MAGIC);
+                BUFFER.putInt(4, VERSION);
+                BUFFER.putLong(CAPACITY, capacity);
+                writeHeader();
+            }
+        }
+
+        for (int i = 0; i < SLOTS; i++)
+            free.add(new Slot());
+
+        WRITER = new Thread(this::writeLoop, "FrameRecorder-" + name);
+        WRITER.setDaemon(true);
+        WRITER.start();
+    }
+
+    /**
+     * Takes a slot to record a frame into, without waiting.
+     *
+     * @return the slot, or null if the recorder is behind and the frame has to be dropped
+     */
+    public Slot claim() {
+        Slot slot = free.poll();
+
+        if (slot == null)
+            dropped++;
+
+        return slot;
+    }
+
+    /**
+     * Hands a frame over to be written, along with the values found in it.
+     *
+     * @param slot        the slot the frame was copied into
+     * @param sequence    the number of the frame
+     * @param captureTime the time given by the sink for the frame, in microseconds
+     * @param values      the values to store with the frame. They are copied.
+     */
+    public void submit(Slot slot, long sequence, long captureTime, double[] values) {
+        if (slot.values.length != values.length)
+            slot.values = new double[values.length];
+
+        System.arraycopy(values, 0, slot.values, 0, values.length);
+        slot.sequence = sequence;
+        slot.captureTime = captureTime;
+
+        // There is always room, since there are only as many slots as the queue holds
+        full.add(slot);
+    }
+
+    /**
+     * Puts the number of frames recorded, dropped because the recorder was behind,
+     * and left out because they were too big for the file into a table.
+     *
+     * @param table the table to put them in
+     */
+    public void publish(ITable table) {
+        table.putNumber("recorded", recorded);
+        table.putNumber("dropped", dropped);
+        table.putNumber("tooLarge", tooLarge);
+    }
+
+    /**
+     * Stops the recorder once it has written every frame it was given, and flushes the file.
+     */
+    public void close() {
+        WRITER.interrupt();
+
+        try {
+            WRITER.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        BUFFER.force();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Slot slot;
+
+            try {
+                slot = full.take();
+            } catch (InterruptedException e) {
+                // Write whatever is left before stopping
+                slot = full.poll();
+                if (slot == null)
+                    return;
+                Thread.currentThread().interrupt();
+            }
+
+            try {
+                write(slot);
+            } catch (RuntimeException e) {
+                // One bad frame should not stop the recording
+                e.printStackTrace();
+            }
+
+            free.add(slot);
+        }
+    }
+
+    private void write(Slot slot) {
+        int length = slot.pixels.length;
+        byte[] bytes = slot.pixels;
+
+        if (FORMAT == Format.JPEG) {
+            image.create(slot.rows, slot.cols, slot.type);
+            image.put(0, 0, slot.pixels);
+
+            Mat encodable = image;
+            if (Yuyv.isYuyv(image)) {
+                Yuyv.toBgr(image, bgr);
+                encodable = bgr;
+            }
+
+            Imgcodecs.imencode(".jpg", encodable, encoded, encodeParams);
+
+            length = (int)encoded.total();
+            if (data.length < length)
+                data = new byte[length * 2];
+
+            encoded.get(0, 0, data);
+            bytes = data;
+        }
+
+        int size = ENTRY_HEADER_SIZE + slot.values.length * 8 + 4 + length;
+        if (size > CAPACITY_BYTES - HEADER_SIZE) {
+            tooLarge++;
+            return;
+        }
+
+        // Start over at the beginning if the frame does not fit before the end, marking where it would have gone
+        if (tail + size > CAPACITY_BYTES) {
+            // Anything left between here and the end is about to be cut off by the marker
+            while (count > 0 && head >= tail) {
+                head = next(head);
+                count--;
+            }
+
+            if (CAPACITY_BYTES - tail >= 4)
+                BUFFER.putInt((int)tail, 0);
+            tail = HEADER_SIZE;
+        }
+
+        // Let go of the oldest frames where this one is about to go
+        while (count > 0 && head >= tail && head < tail + size) {
+            head = next(head);
+            count--;
+        }
+
+        int position = (int)tail;
+        BUFFER.putInt(position, ENTRY_MAGIC);
+        BUFFER.putInt(position + 4, size);
+        BUFFER.putLong(position + 8, slot.sequence);
+        BUFFER.putLong(position + 16, slot.captureTime);
+        BUFFER.putInt(position + 24, FORMAT.ordinal());
+        BUFFER.putInt(position + 28, slot.rows);
+        BUFFER.putInt(position + 32, slot.cols);
+        BUFFER.putInt(position + 36, slot.type);
+        BUFFER.putInt(position + 40, slot.values.length);
+        position += ENTRY_HEADER_SIZE;
+
+        for (double value : slot.values) {
+            BUFFER.putDouble(position, value);
+            position += 8;
+        }
+
+        BUFFER.putInt(position, length);
+        BUFFER.position(position + 4);
+        BUFFER.put(bytes, 0, length);
+
+        if (count == 0)
+            head = tail;
+
+        tail += size;
+        count++;
+        writeHeader();
+
+        recorded++;
+    }
+
+    private void writeHeader() {
+        BUFFER.putLong(HEAD, head);
+        BUFFER.putLong(TAIL, tail);
+        BUFFER.putLong(COUNT, count);
+    }
+
+    private long next(long position) {
+        return next(BUFFER, position, CAPACITY_BYTES);
+    }
+
+    /**
+     * Finds the frame after the one at a position, going back to the start after the last frame before the end.
+     */
+    static long next(MappedByteBuffer buffer, long position, long capacity) {
+        long next = position + buffer.getInt((int)position + 4);
+
+        if (capacity - next < ENTRY_HEADER_SIZE || buffer.getInt((int)next) != ENTRY_MAGIC)
+            next = HEADER_SIZE;
+
+        return next;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Anything frames can be grabbed from: a camera through a {@link edu.wpi.cscore.CvSink},
+ * or recorded frames for replaying offline. Works the same way as a {@link edu.wpi.cscore.CvSink}.
+ */
+public interface FrameSource {
+    /**
+     * Waits for the next frame and copies it into an image.
+     *
+     * @param image the image to copy the frame into
+     * @return the time of the frame in microseconds, or 0 if there was an error
+     */
+    public long grabFrame(Mat image);
+
+    /**
+     * @return what went wrong with the last frame that failed to be grabbed
+     */
+    public String getError();
+
+    /**
+     * @return the type of the frames grabbed, as in {@link CvType}. Most sources give BGR.
+     */
+    public default int frameType() {
+        return CvType.CV_8UC3;
+    }
+
+    /**
+     * @return true if there are no frames left to grab. Live sources are never finished.
+     */
+    public default boolean isFinished() {
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * {@link FrameSource} that reads every image in a directory once, in order of their names.
+ * Frame times are made up as if the images were taken at a steady frame rate, so replays always give the same times.
+ */
+public class ImageDirectorySource implements FrameSource {
+    private final File[] FILES;
+    private final double PERIOD;
+
+    private int next = 0;
+    private String error = "";
+
+    /**
+     * @param directory the directory to read .png, .jpg and .bmp images from
+     * @param fps the frame rate the images were taken at
+     */
+    public ImageDirectorySource(File directory, double fps) {
+        File[] files = directory.listFiles((dir, name) -> name.matches("(?i).*\\.(png|jpe?g|bmp)"));
+        if (files == null)
+            throw new IllegalArgumentException(directory + " is not a directory");
+
+        Arrays.sort(files);
+
+        FILES = files;
+        PERIOD = 1e6 / fps;
+    }
+
+    @Override
+    public long grabFrame(Mat image) {
+        if (isFinished()) {
+            error = "No images left";
+            return 0;
+        }
+
+        File file = FILES[next++];
+        Mat read = Imgcodecs.imread(file.getPath());
+
+        if (read.empty()) {
+            read.release();
+            error = "Could not read " + file;
+            return 0;
+        }
+
+        read.copyTo(image);
+        read.release();
+
+        return (long)(next * PERIOD);
+    }
+
+    @Override
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return next >= FILES.length;
+    }
+}
@@ -0,0 +1,113 @@
+package com.mercury1089.vision;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds, laid out like an HDR histogram:
+ * every power of two is split into 16 linear buckets, so any value is counted within about 6% of itself
+ * using a fixed array, no matter how large it is. Recording is a single atomic increment,
+ * and values can be read and reset from another thread without losing any counts.
+ */
+public class LatencyHistogram {
+    private static final int
+        SUB_BITS = 4,
+        SUB_COUNT = 1 << SUB_BITS,
+        // Enough buckets for anything up to 2^40 ns, which is about 18 minutes
+        BUCKETS = (40 - SUB_BITS + 1) * SUB_COUNT + SUB_COUNT * 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    // Only used by the reading thread
+    private final long[] snapshot = new long[BUCKETS];
+    private long snapshotTotal, snapshotMax;
+
+    /**
+     * Counts a duration.
+     *
+     * @param nanos the duration, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        counts.incrementAndGet(Math.min(bucketOf(nanos), BUCKETS - 1));
+
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos))
+            current = max.get();
+    }
+
+    /**
+     * Moves everything recorded so far into the snapshot used by {@link #percentile(double)} and {@link #max()},
+     * and starts counting from zero again.
+     */
+    public void takeSnapshot() {
+        snapshotTotal = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.getAndSet(i, 0);
+            snapshotTotal += snapshot[i];
+        }
+
+        snapshotMax = max.getAndSet(0);
+    }
+
+    /**
+     * @return the number of durations in the snapshot
+     */
+    public long count() {
+        return snapshotTotal;
+    }
+
+    /**
+     * Gets a percentile of the durations in the snapshot.
+     *
+     * @param percent the percentile, from 0 to 100
+     * @return the highest duration that falls in the bucket of the percentile, in nanoseconds,
+     *         or 0 if nothing was recorded
+     */
+    public long percentile(double percent) {
+        if (snapshotTotal == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(snapshotTotal * percent / 100.0)), seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(highestValueOf(i), snapshotMax);
+        }
+
+        return snapshotMax;
+    }
+
+    /**
+     * @return the largest duration in the snapshot, in nanoseconds
+     */
+    public long max() {
+        return snapshotMax;
+    }
+
+    /**
+     * Values below 2 * SUB_COUNT get a bucket each. Above that, the top SUB_BITS + 1 bits of the value
+     * pick the bucket within its power of two.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT * 2)
+            return (int)value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int)(value >>> shift);
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_COUNT * 2)
+            return bucket;
+
+        int shift = bucket / SUB_COUNT - 1;
+        long sub = bucket % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,241 @@
+package com.mercury1089.vision;
+
+import edu.wpi.first.wpilibj.tables.ITable;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+
+/**
+ * Pool of native image buffers shared by every pipeline and thread, so that buffers are reused
+ * instead of each thread growing its own, and the native memory used can be watched and kept bounded.
+ *
+ * <p>Buffers are kept in sizes rounded up to a multiple of {@value #BUCKET} pixels, and a borrowed {@link Mat}
+ * is a view of the exact size asked for. That way a search window that changes size a little every frame
+ * keeps reusing the same buffer instead of reallocating it. The last view of each buffer is kept along with it,
+ * so borrowing the same size again does not allocate a new view either.
+ * Every Mat that is borrowed has to be given back, and is not valid after that.
+ */
+public class MatPool {
+    /**
+     * The pool used by default, which keeps up to 16 MB of idle buffers.
+     */
+    public static final MatPool SHARED = new MatPool(16 << 20);
+
+    private static final int BUCKET = 64;
+
+    private final long MAX_IDLE_BYTES;
+
+    // Buffers not borrowed by anyone, oldest first, along with their last views, or null,
+    // and their sizes and types packed into keys
+    private Mat[] idle = new Mat[8], idleViews = new Mat[8];
+    private long[] idleKeys = new long[8];
+    private int idleCount = 0;
+
+    // Borrowed views, along with the buffers behind them and their keys
+    private Mat[] views = new Mat[8], backings = new Mat[8];
+    private long[] leaseKeys = new long[8];
+    private int leaseCount = 0;
+
+    private long inUseBytes = 0, idleBytes = 0, peakBytes = 0;
+
+    /**
+     * @param maxIdleBytes the most bytes to keep in buffers no one is using. Older ones are freed past this.
+     */
+    public MatPool(long maxIdleBytes) {
+        MAX_IDLE_BYTES = maxIdleBytes;
+    }
+
+    /**
+     * Borrows a Mat, reusing a buffer from the pool if there is one big enough.
+     * Its contents are whatever was left in the buffer.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param type the type, as in {@link CvType}
+     * @return a Mat of exactly that size and type
+     */
+    public synchronized Mat borrow(int rows, int cols, int type) {
+        int
+            bucketRows = roundUp(rows),
+            bucketCols = roundUp(cols);
+        long key = key(bucketRows, bucketCols, type);
+        long bytes = bytes(key);
+
+        Mat backing, view = null;
+        int index = findIdle(key);
+
+        if (index != -1) {
+            backing = idle[index];
+            view = idleViews[index];
+            removeIdle(index);
+            idleBytes -= bytes;
+        } else {
+            backing = new Mat(bucketRows, bucketCols, type);
+            peakBytes = Math.max(peakBytes, inUseBytes + idleBytes + bytes);
+        }
+
+        inUseBytes += bytes;
+
+        if (rows == bucketRows && cols == bucketCols) {
+            if (view != null)
+                view.release();
+            view = backing;
+        } else if (view == null || view.rows() != rows || view.cols() != cols) {
+            if (view != null)
+                view.release();
+            view = backing.submat(0, rows, 0, cols);
+        }
+
+        addLease(view, backing, key);
+
+        return view;
+    }
+
+    /**
+     * Gives a borrowed Mat back to the pool. The Mat must not be used after this.
+     *
+     * @param mat the Mat returned by {@link #borrow(int, int, int)}
+     * @throws IllegalArgumentException if the Mat was not borrowed from this pool
+     */
+    public synchronized void giveBack(Mat mat) {
+        int lease = -1;
+
+        for (int i = 0; i < leaseCount; i++) {
+            if (views[i] == mat) {
+                lease = i;
+                break;
+            }
+        }
+
+        if (lease == -1)
+            throw new IllegalArgumentException("Mat was not borrowed from this pool");
+
+        Mat backing = backings[lease];
+        long key = leaseKeys[lease];
+
+        // Keep the leases packed by moving the last one into the gap
+        leaseCount--;
+        views[lease] = views[leaseCount];
+        backings[lease] = backings[leaseCount];
+        leaseKeys[lease] = leaseKeys[leaseCount];
+        views[leaseCount] = backings[leaseCount] = null;
+
+        inUseBytes -= bytes(key);
+        idleBytes += bytes(key);
+        addIdle(key, backing, mat != backing ? mat : null);
+
+        // Free the oldest idle buffers until the pool is back under its limit
+        while (idleBytes > MAX_IDLE_BYTES && idleCount > 0) {
+            idleBytes -= bytes(idleKeys[0]);
+            if (idleViews[0] != null)
+                idleViews[0].release();
+            idle[0].release();
+            removeIdle(0);
+        }
+    }
+
+    /**
+     * @return the bytes of native memory in buffers that are borrowed
+     */
+    public synchronized long inUseBytes() {
+        return inUseBytes;
+    }
+
+    /**
+     * @return the bytes of native memory in buffers that are waiting to be borrowed again
+     */
+    public synchronized long idleBytes() {
+        return idleBytes;
+    }
+
+    /**
+     * @return the most bytes of native memory the pool has held at once, borrowed or not
+     */
+    public synchronized long peakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * Puts the memory counters into a table, in bytes.
+     *
+     * @param table the table to put them in
+     */
+    public void publish(ITable table) {
+        long inUse, idle, peak;
+
+        synchronized (this) {
+            inUse = inUseBytes;
+            idle = idleBytes;
+            peak = peakBytes;
+        }
+
+        table.putNumber("nativeBytesInUse", inUse);
+        table.putNumber("nativeBytesIdle", idle);
+        table.putNumber("nativeBytesPeak", peak);
+    }
+
+    /**
+     * @return the index of an idle buffer with the key, or -1 if there is none
+     */
+    private int findIdle(long key) {
+        // Newest first, since it is the most likely to still be in the cache
+        for (int i = idleCount - 1; i >= 0; i--)
+            if (idleKeys[i] == key)
+                return i;
+
+        return -1;
+    }
+
+    private void removeIdle(int index) {
+        idleCount--;
+        System.arraycopy(idle, index + 1, idle, index, idleCount - index);
+        System.arraycopy(idleViews, index + 1, idleViews, index, idleCount - index);
+        System.arraycopy(idleKeys, index + 1, idleKeys, index, idleCount - index);
+        idle[idleCount] = idleViews[idleCount] = null;
+    }
+
+    private void addIdle(long key, Mat mat, Mat view) {
+        if (idleCount == idle.length) {
+            idle = Arrays.copyOf(idle, idleCount * 2);
+            idleViews = Arrays.copyOf(idleViews, idleCount * 2);
+            idleKeys = Arrays.copyOf(idleKeys, idleCount * 2);
+        }
+
+        idle[idleCount] = mat;
+        idleViews[idleCount] = view;
+        idleKeys[idleCount] = key;
+        idleCount++;
+    }
+
+    private void addLease(Mat view, Mat backing, long key) {
+        if (leaseCount == views.length) {
+            views = Arrays.copyOf(views, leaseCount * 2);
+            backings = Arrays.copyOf(backings, leaseCount * 2);
+            leaseKeys = Arrays.copyOf(leaseKeys, leaseCount * 2);
+        }
+
+        views[leaseCount] = view;
+        backings[leaseCount] = backing;
+        leaseKeys[leaseCount] = key;
+        leaseCount++;
+    }
+
+    private static int roundUp(int size) {
+        return Math.max(BUCKET, (size + BUCKET - 1) / BUCKET * BUCKET);
+    }
+
+    /**
+     * Packs a size and type into a key: type in the top bits, then 20 bits each for the rows and columns.
+     */
+    private static long key(int rows, int cols, int type) {
+        return (long)type << 40 | (long)rows << 20 | cols;
+    }
+
+    private static long bytes(long key) {
+        long
+            rows = key >>> 20 & 0xFFFFF,
+            cols = key & 0xFFFFF;
+        return rows * cols * CvType.ELEM_SIZE((int)(key >>> 40));
+    }
+}
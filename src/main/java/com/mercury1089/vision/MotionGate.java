@@ -0,0 +1,150 @@
+package com.mercury1089.vision;
+
+import edu.wpi.first.wpilibj.tables.ITable;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Decides whether a frame is worth processing, by checking whether anything has changed since the last frame
+ * that was. Frames are shrunk to one value per block of pixels, the average of four pixels spread over the block,
+ * which averages out some sensor noise, and compared block by block with the last processed frame.
+ * Averaging every pixel of each block with {@code INTER_AREA} takes ten times as long for little gain.
+ * Comparing with the last processed frame, rather than the one just before, means slow drift still adds up to a change.
+ * Even when nothing changes, a frame is processed at least every so often, so the result never gets too old.
+ */
+public class MotionGate {
+    private final int SCALE;
+    private final int THRESHOLD;
+    private final double FRACTION;
+    private final long REFRESH_MICROS;
+
+    // Reused between frames
+    private final Mat
+        sampled = new Mat(),
+        small = new Mat();
+    private final Size
+        sampledSize = new Size(),
+        size = new Size();
+    private byte[]
+        current = new byte[0],
+        reference = new byte[0];
+
+    private boolean hasReference = false;
+    private long referenceTime;
+
+    // Only changed by the thread checking frames
+    private volatile long processed = 0, skipped = 0, refreshes = 0;
+
+    /**
+     * @param scale         how many pixels across and down make up one block
+     * @param threshold     how much any channel of a block has to change by, out of 255, for the block to have changed
+     * @param fraction      the fraction of blocks that have to change for the frame to have changed
+     * @param refreshMillis the longest to go without processing a frame, in milliseconds
+     */
+    public MotionGate(int scale, int threshold, double fraction, long refreshMillis) {
+        if (scale < 1)
+            throw new IllegalArgumentException("scale must be at least 1, got " + scale);
+
+        SCALE = scale;
+        THRESHOLD = threshold;
+        FRACTION = fraction;
+        REFRESH_MICROS = refreshMillis * 1000;
+    }
+
+    /**
+     * Checks whether a frame has changed enough since the last one processed to be processed again.
+     * If it has, it becomes the frame later ones are compared with.
+     *
+     * @param frame       the frame grabbed
+     * @param captureTime the time given by the sink for the frame, in microseconds
+     * @return true if the frame should be processed, or false if the last result still holds
+     */
+    public boolean shouldProcess(Mat frame, long captureTime) {
+        size.width = Math.max(1, frame.cols() / SCALE);
+        size.height = Math.max(1, frame.rows() / SCALE);
+        sampledSize.width = size.width * 2;
+        sampledSize.height = size.height * 2;
+
+        // Pick out 2x2 pixels per block, then average them
+        Imgproc.resize(frame, sampled, sampledSize, 0, 0, Imgproc.INTER_NEAREST);
+        Imgproc.resize(sampled, small, size, 0, 0, Imgproc.INTER_AREA);
+
+        int length = (int)(small.total() * small.channels());
+        if (current.length != length)
+            current = new byte[length];
+
+        small.get(0, 0, current);
+
+        boolean process;
+
+        if (!hasReference || reference.length != length || changed(small.channels())) {
+            process = true;
+        } else if (captureTime - referenceTime >= REFRESH_MICROS) {
+            process = true;
+            refreshes++;
+        } else {
+            process = false;
+        }
+
+        if (process) {
+            byte[] swap = reference;
+            reference = current;
+            current = swap;
+            hasReference = true;
+            referenceTime = captureTime;
+            processed++;
+        } else {
+            skipped++;
+        }
+
+        return process;
+    }
+
+    /**
+     * Counts the blocks that changed, stopping as soon as there are enough.
+     */
+    private boolean changed(int channels) {
+        int
+            blocks = current.length / channels,
+            limit = (int)(FRACTION * blocks),
+            changed = 0;
+
+        for (int i = 0; i < current.length; i += channels) {
+            for (int c = 0; c < channels; c++) {
+                if (Math.abs((current[i + c] & 0xFF) - (reference[i + c] & 0xFF)) > THRESHOLD) {
+                    if (++changed > limit)
+                        return true;
+                    break;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Puts the number of frames processed and skipped, the fraction skipped, the number processed only because
+     * the last result got too old, and the configured longest time to go without processing a frame into a table.
+     *
+     * @param table the table to put them in
+     */
+    public void publish(ITable table) {
+        long
+            processed = this.processed,
+            skipped = this.skipped;
+
+        table.putNumber("processed", processed);
+        table.putNumber("skipped", skipped);
+        table.putNumber("skipRate", skipped / (double)Math.max(1, processed + skipped));
+        table.putNumber("refreshes", refreshes);
+        table.putNumber("refreshMillis", REFRESH_MICROS / 1000);
+    }
+
+    /**
+     * @return the fraction of frames skipped so far
+     */
+    public double skipRate() {
+        return skipped / (double)Math.max(1, processed + skipped);
+    }
+}
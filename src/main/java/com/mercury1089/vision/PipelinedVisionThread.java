@@ -0,0 +1,199 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+
+/**
+ * {@link Thread} that runs a pipeline as four stages, each on its own thread:
+ * grab, process, annotate/stream, and publish. Stages hand frames to each other through
+ * {@link TripleBuffer}s, so a slow stage never holds up the others; it just skips
+ * to the newest frame when it is ready for another one.
+ * This thread does the grabbing and starts and stops the other three.
+ *
+ * @param <P> the type of pipeline to run
+ * @param <R> the type of result pulled out of the pipeline
+ */
+public class PipelinedVisionThread<P extends VisionPipeline, R> extends Thread {
+    private final FrameSource SINK;
+    private final DemandStream SOURCE;
+    private final P PIPELINE;
+    private final Stages<? super P, R> STAGES;
+
+    private final TripleBuffer<Frame<R>>
+        GRABBED,
+        ANNOTATE,
+        PUBLISH;
+
+    private final Thread[] WORKERS;
+
+    /**
+     * @param sink the feed to grab frames from
+     * @param source the feed to put annotated frames into, whenever it wants one
+     * @param pipeline the pipeline to process frames with
+     * @param stages the work done with the pipeline's output in each stage
+     * @param name the name of the vision to append to the thread names
+     */
+    public PipelinedVisionThread(FrameSource sink, DemandStream source, P pipeline, Stages<? super P, R> stages, String name) {
+        super("PipelinedVision-" + name + "-grab");
+
+        SINK = sink;
+        SOURCE = source;
+        PIPELINE = pipeline;
+        STAGES = stages;
+
+        GRABBED = new TripleBuffer<>(() -> new Frame<>(null));
+        ANNOTATE = new TripleBuffer<>(() -> new Frame<>(stages.newResult()));
+        PUBLISH = new TripleBuffer<>(() -> new Frame<>(stages.newResult()));
+
+        WORKERS = new Thread[] {
+            new Thread(this::processLoop, "PipelinedVision-" + name + "-process"),
+            new Thread(this::annotateLoop, "PipelinedVision-" + name + "-annotate"),
+            new Thread(this::publishLoop, "PipelinedVision-" + name + "-publish")
+        };
+    }
+
+    @Override
+    public void run() {
+        for (Thread worker : WORKERS)
+            worker.start();
+
+        long sequence = 0;
+
+        while (!Thread.interrupted() && !SINK.isFinished()) {
+            Frame<R> frame = GRABBED.back();
+
+            // If grabFrame returns 0, something has gone wrong.
+            // Report the problem and continue.
+            long start = System.nanoTime();
+            long time = SINK.grabFrame(frame.image);
+            if (time == 0) {
+                System.out.println(getName() + ": " + SINK.getError());
+                continue;
+            }
+
+            frame.captureTime = time;
+            frame.grabNanos = System.nanoTime();
+            STAGES.grabbed(frame.grabNanos - start);
+            frame.sequence = ++sequence;
+
+            GRABBED.publish();
+        }
+
+        for (Thread worker : WORKERS)
+            worker.interrupt();
+    }
+
+    private void processLoop() {
+        try {
+            while (true) {
+                GRABBED.take();
+                Frame<R> frame = GRABBED.front();
+
+                PIPELINE.process(frame.image);
+
+                Frame<R> publish = PUBLISH.back();
+                STAGES.extract(PIPELINE, frame.image, frame.captureTime, publish.result);
+                copyTimes(frame, publish);
+
+                // The annotate stage gets its own copy, so neither stage can see the other one's changes.
+                // Frames that will not be streamed are not copied at all.
+                if (SOURCE.wantsFrame()) {
+                    Frame<R> annotate = ANNOTATE.back();
+
+                    STAGES.copy(publish.result, annotate.result);
+                    frame.image.copyTo(annotate.image);
+                    copyTimes(frame, annotate);
+
+                    ANNOTATE.publish();
+                }
+
+                PUBLISH.publish();
+            }
+        } catch (InterruptedException e) {
+            // Time to stop
+        }
+    }
+
+    private void annotateLoop() {
+        try {
+            while (true) {
+                ANNOTATE.take();
+                Frame<R> frame = ANNOTATE.front();
+
+                STAGES.annotate(frame.image, frame.result);
+
+                long start = System.nanoTime();
+                SOURCE.putFrame(frame.image);
+                STAGES.streamed(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            // Time to stop
+        }
+    }
+
+    private void publishLoop() {
+        try {
+            while (true) {
+                PUBLISH.take();
+                STAGES.publish(PUBLISH.front());
+            }
+        } catch (InterruptedException e) {
+            // Time to stop
+        }
+    }
+
+    private static void copyTimes(Frame<?> from, Frame<?> to) {
+        to.captureTime = from.captureTime;
+        to.grabNanos = from.grabNanos;
+        to.sequence = from.sequence;
+    }
+
+    /**
+     * The work done with a pipeline's output in each stage.
+     * {@link #extract} and {@link #copy} are called from the process stage,
+     * and the others from the stage they mention.
+     *
+     * @param <P> the type of pipeline
+     * @param <R> the type of result pulled out of the pipeline
+     */
+    public interface Stages<P extends VisionPipeline, R> {
+        /**
+         * @return a new, empty result. Called up front for every slot of the buffers.
+         */
+        public R newResult();
+
+        /**
+         * Copies one result into another.
+         */
+        public void copy(R from, R to);
+
+        /**
+         * Process stage: pulls the result out of the pipeline after it processed a frame.
+         * The capture time is the time of the frame given by the sink, in microseconds.
+         */
+        public void extract(P pipeline, Mat image, long captureTime, R result);
+
+        /**
+         * Annotate stage: draws the result onto the frame before it is streamed.
+         */
+        public void annotate(Mat image, R result);
+
+        /**
+         * Publish stage: sends the result out, e.g. to a network table.
+         */
+        public void publish(Frame<R> frame);
+
+        /**
+         * Grab stage: called after every frame grabbed, for timing.
+         *
+         * @param waitNanos how long the grab waited for the frame
+         */
+        public default void grabbed(long waitNanos) { }
+
+        /**
+         * Annotate stage: called after every frame put into the output feed, for timing.
+         *
+         * @param putFrameNanos how long putting the frame took
+         */
+        public default void streamed(long putFrameNanos) { }
+    }
+}
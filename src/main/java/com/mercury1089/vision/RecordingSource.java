@@ -0,0 +1,132 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link FrameSource} that plays back every frame of a ring file written by a {@link FrameRecorder} once,
+ * oldest first. Frame times are the times the frames were captured at, and the values recorded with each frame
+ * can be read with {@link #values()}.
+ */
+public class RecordingSource implements FrameSource {
+    private final MappedByteBuffer BUFFER;
+    private final long CAPACITY;
+    private final long COUNT;
+
+    private long position, frames = 0, sequence = 0;
+    private double[] values = new double[0];
+    private byte[] data = new byte[0];
+    private final MatOfByte encoded = new MatOfByte();
+    private String error = "";
+
+    /**
+     * @param file the ring file to play back
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a recording
+     */
+    public RecordingSource(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            BUFFER = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+
+        if (BUFFER.capacity() < FrameRecorder.HEADER_SIZE
+            || BUFFER.getInt(0) != FrameRecorder.MAGIC
+            || BUFFER.getInt(4) != FrameRecorder.VERSION)
+            throw new IllegalArgumentException(file + " is not a recording");
+
+        CAPACITY = BUFFER.getLong(FrameRecorder.CAPACITY);
+        position = BUFFER.getLong(FrameRecorder.HEAD);
+        COUNT = BUFFER.getLong(FrameRecorder.COUNT);
+    }
+
+    @Override
+    public long grabFrame(Mat image) {
+        if (isFinished()) {
+            error = "No frames left";
+            return 0;
+        }
+
+        int entry = (int)position;
+        frames++;
+        position = FrameRecorder.next(BUFFER, position, CAPACITY);
+
+        if (BUFFER.getInt(entry) != FrameRecorder.ENTRY_MAGIC) {
+            error = "Frame " + frames + " is corrupt";
+            return 0;
+        }
+
+        sequence = BUFFER.getLong(entry + 8);
+        long captureTime = BUFFER.getLong(entry + 16);
+        FrameRecorder.Format format = FrameRecorder.Format.values()[BUFFER.getInt(entry + 24)];
+        int
+            rows = BUFFER.getInt(entry + 28),
+            cols = BUFFER.getInt(entry + 32),
+            type = BUFFER.getInt(entry + 36),
+            valueCount = BUFFER.getInt(entry + 40),
+            offset = entry + FrameRecorder.ENTRY_HEADER_SIZE;
+
+        if (values.length != valueCount)
+            values = new double[valueCount];
+
+        for (int i = 0; i < valueCount; i++, offset += 8)
+            values[i] = BUFFER.getDouble(offset);
+
+        int length = BUFFER.getInt(offset);
+        if (data.length != length)
+            data = new byte[length];
+
+        BUFFER.position(offset + 4);
+        BUFFER.get(data, 0, length);
+
+        if (format == FrameRecorder.Format.RAW) {
+            image.create(rows, cols, type);
+            image.put(0, 0, data);
+        } else {
+            encoded.fromArray(data);
+            Mat decoded = Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_COLOR);
+
+            if (decoded.empty()) {
+                decoded.release();
+                error = "Could not decode frame " + frames;
+                return 0;
+            }
+
+            decoded.copyTo(image);
+            decoded.release();
+        }
+
+        return captureTime;
+    }
+
+    /**
+     * @return the sequence number the last frame grabbed was recorded with
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the values recorded with the last frame grabbed, in the layout of
+     *         {@link com.mercury1089.main.TargetPublisher}'s packed record. The array is reused for every frame.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    @Override
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return frames >= COUNT;
+    }
+}
@@ -0,0 +1,113 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * A grabbed frame shared by several pipelines at once, along with the color spaces they might want it in.
+ * Each conversion is only done the first time a pipeline asks for it, and every other pipeline gets the same one,
+ * so a frame is never converted twice no matter how many pipelines run on it.
+ * Pipelines must only read the frame and its conversions, never write to them.
+ */
+public class SharedFrame {
+    /**
+     * One color space the frame can be converted to, done at most once per frame.
+     */
+    private static class Conversion {
+        private final int CODE;
+        private final Mat CONVERTED = new Mat();
+        private boolean done = false;
+
+        Conversion(int code) {
+            CODE = code;
+        }
+
+        synchronized Mat get(Mat bgr) {
+            if (!done) {
+                Imgproc.cvtColor(bgr, CONVERTED, CODE);
+                done = true;
+            }
+
+            return CONVERTED;
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        synchronized void reset() {
+            done = false;
+        }
+
+        void release() {
+            CONVERTED.release();
+        }
+    }
+
+    private final Mat BGR;
+    private final Conversion
+        HLS = new Conversion(Imgproc.COLOR_BGR2HLS),
+        HSV = new Conversion(Imgproc.COLOR_BGR2HSV),
+        GRAY = new Conversion(Imgproc.COLOR_BGR2GRAY);
+
+    /**
+     * @param bgr the Mat frames are grabbed into, which the conversions are made from
+     */
+    public SharedFrame(Mat bgr) {
+        BGR = bgr;
+    }
+
+    /**
+     * Forgets the conversions of the last frame. This has to be called every time a new frame is grabbed,
+     * before any pipeline sees it.
+     */
+    public void reset() {
+        HLS.reset();
+        HSV.reset();
+        GRAY.reset();
+    }
+
+    /**
+     * @return the frame as it was grabbed, in BGR
+     */
+    public Mat bgr() {
+        return BGR;
+    }
+
+    /**
+     * @return the frame in HLS, converting it if no pipeline has yet
+     */
+    public Mat hls() {
+        return HLS.get(BGR);
+    }
+
+    /**
+     * @return whether the frame has already been converted to HLS, so that asking for it costs nothing
+     */
+    public boolean hasHls() {
+        return HLS.isDone();
+    }
+
+    /**
+     * @return the frame in HSV, converting it if no pipeline has yet
+     */
+    public Mat hsv() {
+        return HSV.get(BGR);
+    }
+
+    /**
+     * @return the frame in grayscale, converting it if no pipeline has yet
+     */
+    public Mat gray() {
+        return GRAY.get(BGR);
+    }
+
+    /**
+     * Frees the native memory of the conversions. The BGR frame belongs to whoever grabbed it.
+     */
+    public void release() {
+        HLS.release();
+        HSV.release();
+        GRAY.release();
+    }
+}
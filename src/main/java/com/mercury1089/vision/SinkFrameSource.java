@@ -0,0 +1,28 @@
+package com.mercury1089.vision;
+
+import edu.wpi.cscore.CvSink;
+import org.opencv.core.Mat;
+
+/**
+ * {@link FrameSource} that grabs frames from a {@link CvSink}.
+ */
+public class SinkFrameSource implements FrameSource {
+    private final CvSink SINK;
+
+    /**
+     * @param sink the sink to grab frames from
+     */
+    public SinkFrameSource(CvSink sink) {
+        SINK = sink;
+    }
+
+    @Override
+    public long grabFrame(Mat image) {
+        return SINK.grabFrame(image);
+    }
+
+    @Override
+    public String getError() {
+        return SINK.getError();
+    }
+}
@@ -0,0 +1,118 @@
+package com.mercury1089.vision;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free hand-off of objects from one producer thread to one consumer thread
+ * where only the newest object matters.
+ * It is a ring of three preallocated slots: the producer fills the back slot, the consumer reads the front slot,
+ * and the middle slot is swapped between them. If the producer publishes again before the consumer
+ * takes the middle slot, the stale object in it is dropped in favor of the new one.
+ * Neither side ever blocks the other, and nothing is allocated after construction.
+ *
+ * @param <T> the type of object being handed off
+ */
+public class TripleBuffer<T> {
+    // Set on the middle index when it holds something the consumer has not seen yet
+    private static final int FRESH = 4, INDEX = 3;
+
+    private final Object[] SLOTS = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // Each of these is only ever touched by one side
+    private int back = 0, front = 2;
+    private long dropped = 0;
+
+    private volatile Thread consumer;
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < SLOTS.length; i++)
+            SLOTS[i] = factory.get();
+    }
+
+    /**
+     * Producer side: gets the slot to fill before calling {@link #publish()}.
+     *
+     * @return the back slot
+     */
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T)SLOTS[back];
+    }
+
+    /**
+     * Producer side: hands the back slot to the consumer and takes a new one to fill.
+     */
+    public void publish() {
+        int old = middle.getAndSet(back | FRESH);
+
+        // The consumer never got to the last one
+        if ((old & FRESH) != 0)
+            dropped++;
+
+        back = old & INDEX;
+
+        Thread waiting = consumer;
+        if (waiting != null)
+            LockSupport.unpark(waiting);
+    }
+
+    /**
+     * Producer side: counts the objects that were replaced before the consumer took them.
+     *
+     * @return the number of dropped objects
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Consumer side: takes the newest published object, if there is one.
+     *
+     * @return true if the front slot now holds a new object
+     */
+    public boolean poll() {
+        if (!isFresh())
+            return false;
+
+        front = middle.getAndSet(front) & INDEX;
+        return true;
+    }
+
+    /**
+     * Consumer side: checks if there is a new object to take, without taking it.
+     *
+     * @return true if the next {@link #poll()} would succeed
+     */
+    public boolean isFresh() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Consumer side: waits until a new object is published and takes it.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void take() throws InterruptedException {
+        consumer = Thread.currentThread();
+
+        while (!poll()) {
+            LockSupport.park(this);
+
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Consumer side: gets the object taken by the last successful {@link #poll()} or {@link #take()}.
+     *
+     * @return the front slot
+     */
+    @SuppressWarnings("unchecked")
+    public T front() {
+        return (T)SLOTS[front];
+    }
+}
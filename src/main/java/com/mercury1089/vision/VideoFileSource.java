@@ -0,0 +1,53 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * {@link FrameSource} that reads every frame of a video file once.
+ * Frame times are made up from the frame rate of the video, so replays always give the same times.
+ */
+public class VideoFileSource implements FrameSource {
+    private final VideoCapture CAPTURE;
+    private final double PERIOD;
+
+    private long frames = 0;
+    private boolean finished = false;
+    private String error = "";
+
+    /**
+     * @param path the video file to read
+     * @param fps the frame rate to use if the video does not have one
+     */
+    public VideoFileSource(String path, double fps) {
+        CAPTURE = new VideoCapture(path);
+        if (!CAPTURE.isOpened())
+            throw new IllegalArgumentException("Could not open " + path);
+
+        double videoFps = CAPTURE.get(Videoio.CAP_PROP_FPS);
+        PERIOD = 1e6 / (videoFps > 0 ? videoFps : fps);
+    }
+
+    @Override
+    public long grabFrame(Mat image) {
+        if (finished || !CAPTURE.read(image)) {
+            finished = true;
+            CAPTURE.release();
+            error = "No frames left";
+            return 0;
+        }
+
+        return (long)(++frames * PERIOD);
+    }
+
+    @Override
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+}
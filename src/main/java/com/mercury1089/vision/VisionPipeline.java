@@ -8,4 +8,14 @@ import org.opencv.core.Mat;
  */
 public interface VisionPipeline {
     public void process(Mat source);
+
+    /**
+     * Processes a frame shared with other pipelines. Pipelines that convert the frame to another color space
+     * should override this to use the shared conversion instead of making their own.
+     *
+     * @param frame the frame to process, which must not be written to
+     */
+    public default void process(SharedFrame frame) {
+        process(frame.bgr());
+    }
 }
@@ -0,0 +1,213 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes the frames of any number of cameras on a fixed pool of worker threads,
+ * one per core by default, instead of a thread each.
+ * Every camera gets a lightweight thread that only waits on its source and hands each frame to the pool as it arrives.
+ * A camera never has more than one frame waiting: if a newer frame arrives first, the old one is dropped.
+ * When every worker is busy, waiting frames from cameras with a higher priority are processed first.
+ */
+public class VisionScheduler {
+    private final ThreadPoolExecutor EXECUTOR;
+    private final List<Camera> CAMERAS = new ArrayList<>();
+
+    // Keeps cameras with the same priority in the order they were queued
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong workerCount = new AtomicLong();
+
+    private boolean started = false;
+
+    /**
+     * Creates a scheduler with one worker per core.
+     */
+    public VisionScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers the number of threads to process frames on
+     */
+    public VisionScheduler(int workers) {
+        EXECUTOR = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "VisionScheduler-worker-" + workerCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Does whatever has to be done with each frame of a camera. A camera's frames are handed over one at a time,
+     * though not always on the same worker.
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+        /**
+         * @param image       the frame, which is only the handler's until it returns
+         * @param sequence    counts up by one for every frame grabbed from the camera, including any that were dropped
+         * @param captureTime the time of the frame given by the source, in microseconds
+         */
+        public void process(Mat image, long sequence, long captureTime);
+    }
+
+    /**
+     * Adds a camera to be processed once the scheduler starts.
+     *
+     * @param camera the camera and pipeline to run
+     * @param fps the most frames per second to process, or 0 to process every frame
+     * @param priority how important the camera is; higher priorities are processed first when the workers are busy
+     */
+    public void add(VisionThread<?> camera, double fps, int priority) {
+        add(camera.getName(), camera.source(), (image, sequence, captureTime) -> camera.process(image), fps, priority);
+    }
+
+    /**
+     * Adds a camera to be processed once the scheduler starts.
+     *
+     * @param name the name of the camera, for its thread
+     * @param source where to grab the camera's frames from
+     * @param handler what to do with each frame
+     * @param fps the most frames per second to process, or 0 to process every frame
+     * @param priority how important the camera is; higher priorities are processed first when the workers are busy
+     */
+    public synchronized void add(String name, FrameSource source, FrameHandler handler, double fps, int priority) {
+        if (started)
+            throw new IllegalStateException("Cameras must be added before the scheduler is started");
+
+        CAMERAS.add(new Camera(name, source, handler, fps, priority));
+    }
+
+    /**
+     * Starts grabbing frames from every camera.
+     */
+    public synchronized void start() {
+        started = true;
+        EXECUTOR.prestartAllCoreThreads();
+
+        for (Camera camera : CAMERAS)
+            camera.GRABBER.start();
+    }
+
+    /**
+     * Stops grabbing frames and stops the workers after the frames they are on.
+     */
+    public synchronized void stop() {
+        for (Camera camera : CAMERAS)
+            camera.GRABBER.interrupt();
+
+        EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * Waits until every camera's source has run out of frames and the last frame grabbed has been processed,
+     * then stops the workers. Only sources that finish, like recordings, ever do.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void awaitFinished() throws InterruptedException {
+        for (Camera camera : CAMERAS)
+            camera.GRABBER.join();
+
+        // No more frames can arrive, so once a camera is neither queued nor holding a frame it is done
+        for (Camera camera : CAMERAS) {
+            while (camera.scheduled.get() || camera.FRAMES.isFresh())
+                Thread.sleep(1);
+        }
+
+        EXECUTOR.shutdown();
+    }
+
+    /**
+     * Everything the scheduler keeps for one camera. Runs itself on the pool to process the newest frame.
+     */
+    private class Camera implements Runnable, Comparable<Camera> {
+        private final FrameSource SOURCE;
+        private final FrameHandler HANDLER;
+        private final int PRIORITY;
+        // Shortest time between frames, in microseconds. Frames up to 10% early still count.
+        private final long PERIOD;
+
+        private final TripleBuffer<Frame<Void>> FRAMES = new TripleBuffer<>(() -> new Frame<>(null));
+        private final Thread GRABBER;
+
+        // Set while this camera is queued or being processed, so that it is never on two workers at once
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long order;
+
+        Camera(String name, FrameSource source, FrameHandler handler, double fps, int priority) {
+            SOURCE = source;
+            HANDLER = handler;
+            PRIORITY = priority;
+            PERIOD = fps > 0 ? (long)(0.9e6 / fps) : 0;
+
+            GRABBER = new Thread(this::grabLoop, "VisionScheduler-" + name + "-grab");
+            GRABBER.setDaemon(true);
+        }
+
+        private void grabLoop() {
+            long last = 0, sequence = 0;
+
+            while (!Thread.interrupted() && !SOURCE.isFinished()) {
+                Frame<Void> frame = FRAMES.back();
+
+                long time = SOURCE.grabFrame(frame.image);
+                if (time == 0) {
+                    if (!SOURCE.isFinished())
+                        System.out.println(Thread.currentThread().getName() + ": " + SOURCE.getError());
+                    continue;
+                }
+
+                sequence++;
+                if (time - last < PERIOD)
+                    continue;
+
+                last = time;
+                frame.captureTime = time;
+                frame.sequence = sequence;
+                FRAMES.publish();
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                order = queued.incrementAndGet();
+                EXECUTOR.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (FRAMES.poll()) {
+                    Frame<Void> frame = FRAMES.front();
+                    HANDLER.process(frame.image, frame.sequence, frame.captureTime);
+                }
+            } finally {
+                scheduled.set(false);
+            }
+
+            // A frame may have arrived while this one was being processed
+            if (FRAMES.isFresh())
+                schedule();
+        }
+
+        @Override
+        public int compareTo(Camera other) {
+            if (PRIORITY != other.PRIORITY)
+                return Integer.compare(other.PRIORITY, PRIORITY);
+
+            return Long.compare(order, other.order);
+        }
+    }
+}
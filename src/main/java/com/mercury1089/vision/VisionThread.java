@@ -7,6 +7,7 @@ import org.opencv.core.Mat;
 /**
  * {@link Runnable} that manages one image processing process.
  * Some things have been implemented from WPI's implementation of vision processing.
+ * It can either be run on its own thread, or added to a {@link VisionScheduler} to share a pool of threads with other cameras.
  */
 public class VisionThread<P extends VisionPipeline> implements Runnable {
 
@@ -15,6 +16,7 @@ public class VisionThread<P extends VisionPipeline> implements Runnable {
     public boolean createRawStreams = true;
     public boolean createOutStreams = true;
 
+    private final String NAME;
     private final CvSink SINK;
     private final CvSource SOURCE;
     private final P PIPELINE;
@@ -27,6 +29,7 @@ public class VisionThread<P extends VisionPipeline> implements Runnable {
         SOURCE = new CvSource("SOURCE_" + name, VideoMode.PixelFormat.kMJPEG, VisionConfig.resX, VisionConfig.resY, VisionConfig.fps);
 
         // Initialize everything else.
+        NAME = name;
         SINK = new CvSink("SINK_" + name);
         SINK.setSource(camera);
 
@@ -51,25 +54,52 @@ public class VisionThread<P extends VisionPipeline> implements Runnable {
         // so we define them outside the loop and reuse the object.
         Mat img = new Mat();
 
+        // Each frame is processed as soon as it arrives
         while (!Thread.currentThread().isInterrupted()) {
-            try {
-                // If grabFrame returns 0, something has gone wrong.
-                // Report the problem and continue.
-                if (SINK.grabFrame(img) == 0) {
-                    System.out.println(SINK.getError());
-                    continue;
-                }
-
-                PIPELINE.process(img);
-                LISTENER.run(PIPELINE);
-
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            if (grabFrame(img) != 0)
+                process(img);
         }
     }
 
+    /**
+     * @return the name of the camera
+     */
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * @return the camera's frames, for a {@link VisionScheduler} to grab
+     */
+    FrameSource source() {
+        return new SinkFrameSource(SINK);
+    }
+
+    /**
+     * Waits for the next frame from the camera.
+     * If grabFrame returns 0, something has gone wrong, so the problem is reported.
+     *
+     * @param image the image to copy the frame into
+     * @return the time of the frame in microseconds, or 0 if there was an error
+     */
+    long grabFrame(Mat image) {
+        long time = SINK.grabFrame(image);
+        if (time == 0)
+            System.out.println(NAME + ": " + SINK.getError());
+
+        return time;
+    }
+
+    /**
+     * Runs a frame through the pipeline and hands the pipeline to the listener.
+     *
+     * @param image the frame to process
+     */
+    void process(Mat image) {
+        PIPELINE.process(image);
+        LISTENER.run(PIPELINE);
+    }
+
     /**
      * {@link FunctionalInterface} that is used in the thread to allow the user
      * to use the info from the pipeline from processing the image.
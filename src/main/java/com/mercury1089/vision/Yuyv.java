@@ -0,0 +1,104 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Helpers for frames in YUYV, the raw format most USB cameras send before anything compresses it.
+ * A YUYV frame is a {@link CvType#CV_8UC2} {@link Mat} with a luma value and one chroma value per pixel:
+ * each pair of pixels starting at an even column shares the blue difference U of the first and the red difference V
+ * of the second, in studio range (16 to 235 for luma).
+ */
+public final class Yuyv {
+    // The fixed point coefficients OpenCV uses to convert YUYV to BGR, with 20 fractional bits
+    private static final int
+        SHIFT = 20,
+        CY = 1220542,
+        CUB = 2116026,
+        CUG = -409993,
+        CVG = -852492,
+        CVR = 1673527;
+
+    private Yuyv() {
+    }
+
+    /**
+     * @param image a frame
+     * @return true if the frame is in YUYV rather than BGR
+     */
+    public static boolean isYuyv(Mat image) {
+        return image.type() == CvType.CV_8UC2;
+    }
+
+    /**
+     * Converts a YUYV frame to BGR.
+     *
+     * @param yuyv the frame to convert
+     * @param bgr  the Mat to store the BGR frame in
+     */
+    public static void toBgr(Mat yuyv, Mat bgr) {
+        Imgproc.cvtColor(yuyv, bgr, Imgproc.COLOR_YUV2BGR_YUYV);
+    }
+
+    /**
+     * Converts one pixel of a YUYV frame to BGR exactly the way {@link #toBgr(Mat, Mat)} does.
+     *
+     * @param y   the luma of the pixel
+     * @param u   the blue difference of its pair
+     * @param v   the red difference of its pair
+     * @param bgr the array to store the blue, green and red in
+     */
+    public static void toBgr(int y, int u, int v, int[] bgr) {
+        int
+            luma = Math.max(0, y - 16) * CY,
+            half = 1 << (SHIFT - 1);
+        u -= 128;
+        v -= 128;
+
+        bgr[0] = saturate((luma + half + CUB * u) >> SHIFT);
+        bgr[1] = saturate((luma + half + CVG * v + CUG * u) >> SHIFT);
+        bgr[2] = saturate((luma + half + CVR * v) >> SHIFT);
+    }
+
+    /**
+     * Converts a BGR frame to YUYV with the BT.601 studio range coefficients, averaging the chroma of each pair.
+     * OpenCV cannot convert to YUYV itself. This is how frames recorded in BGR are turned back into what the camera
+     * would have sent, to check the YUYV path without a camera. An odd last column is dropped.
+     *
+     * @param bgr  the frame to convert
+     * @param yuyv the Mat to store the YUYV frame in
+     */
+    public static void fromBgr(Mat bgr, Mat yuyv) {
+        int
+            rows = bgr.rows(),
+            cols = bgr.cols() & ~1;
+
+        byte[] in = new byte[rows * bgr.cols() * 3];
+        byte[] out = new byte[rows * cols * 2];
+        bgr.get(0, 0, in);
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col += 2) {
+                int
+                    p = (row * bgr.cols() + col) * 3,
+                    o = (row * cols + col) * 2,
+                    b0 = in[p] & 0xFF, g0 = in[p + 1] & 0xFF, r0 = in[p + 2] & 0xFF,
+                    b1 = in[p + 3] & 0xFF, g1 = in[p + 4] & 0xFF, r1 = in[p + 5] & 0xFF,
+                    b = b0 + b1, g = g0 + g1, r = r0 + r1;
+
+                out[o] = (byte)(((66 * r0 + 129 * g0 + 25 * b0 + 128) >> 8) + 16);
+                out[o + 1] = (byte)saturate(((-38 * r - 74 * g + 112 * b + 256) >> 9) + 128);
+                out[o + 2] = (byte)(((66 * r1 + 129 * g1 + 25 * b1 + 128) >> 8) + 16);
+                out[o + 3] = (byte)saturate(((112 * r - 94 * g - 18 * b + 256) >> 9) + 128);
+            }
+        }
+
+        yuyv.create(rows, cols, CvType.CV_8UC2);
+        yuyv.put(0, 0, out);
+    }
+
+    private static int saturate(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
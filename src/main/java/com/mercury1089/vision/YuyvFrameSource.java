@@ -0,0 +1,80 @@
+package com.mercury1089.vision;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * {@link FrameSource} that grabs frames from a camera in YUYV, exactly as the camera sends them,
+ * so that nothing is spent decoding MJPEG or converting to BGR. A {@link edu.wpi.cscore.CvSink} always hands over
+ * BGR, so frames are grabbed with OpenCV's V4L2 capture instead, with its conversion to BGR turned off.
+ * The camera's other settings can still be changed through its {@link edu.wpi.cscore.UsbCamera},
+ * as long as nothing else is streaming from it.
+ * Frame times are when each frame was read, in microseconds.
+ */
+public class YuyvFrameSource implements FrameSource {
+    private static final int FOURCC = 'Y' | 'U' << 8 | 'Y' << 16 | 'V' << 24;
+
+    private final VideoCapture CAPTURE;
+    private final int ROWS, COLS;
+
+    // Reused between frames
+    private final Mat raw = new Mat();
+    private String error = "";
+
+    /**
+     * @param device the number of the camera, as in /dev/video&lt;device&gt;
+     * @param width  the width to capture at
+     * @param height the height to capture at
+     * @param fps    the frame rate to capture at
+     * @throws IllegalArgumentException if the camera cannot be opened
+     */
+    public YuyvFrameSource(int device, int width, int height, int fps) {
+        CAPTURE = new VideoCapture(device);
+        if (!CAPTURE.isOpened())
+            throw new IllegalArgumentException("Could not open camera " + device);
+
+        CAPTURE.set(Videoio.CAP_PROP_FOURCC, FOURCC);
+        CAPTURE.set(Videoio.CAP_PROP_FRAME_WIDTH, width);
+        CAPTURE.set(Videoio.CAP_PROP_FRAME_HEIGHT, height);
+        CAPTURE.set(Videoio.CAP_PROP_FPS, fps);
+        CAPTURE.set(Videoio.CAP_PROP_CONVERT_RGB, 0);
+
+        ROWS = height;
+        COLS = width;
+    }
+
+    @Override
+    public long grabFrame(Mat image) {
+        if (!CAPTURE.read(raw)) {
+            error = "Could not read a frame";
+            return 0;
+        }
+
+        long time = System.nanoTime() / 1000;
+
+        // Without converting, V4L2 hands over the buffer as it is, which may come as a single row of bytes
+        if (raw.total() * raw.elemSize() != (long)ROWS * COLS * 2 || !raw.isContinuous()) {
+            error = "Camera did not send " + COLS + "x" + ROWS + " YUYV, got " + raw;
+            return 0;
+        }
+
+        Mat view = raw.reshape(2, ROWS);
+        image.create(ROWS, COLS, CvType.CV_8UC2);
+        view.copyTo(image);
+        view.release();
+
+        return time;
+    }
+
+    @Override
+    public int frameType() {
+        return CvType.CV_8UC2;
+    }
+
+    @Override
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,172 @@
+package com.mercury1089.main;
+
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that processing a frame, finding the target in it and tracking it allocate nothing on the heap once warmed
+ * up, the same way the vision threads run them, so that a long match never builds up garbage.
+ * Allocations are counted per thread, so nothing else running in the JVM is counted.
+ *
+ * <p>OpenCV's Java bindings allocate wherever they hand back a new {@link Mat}: findContours makes one per contour,
+ * and a search window makes a new view whenever it moves. So contours are only checked to allocate the same amount
+ * every frame, and tracking is checked while the robot is lined up and the window stays put, or to allocate
+ * no more than the moving window's view while the target moves.
+ */
+public class AllocationTest {
+    // Same as the default threshold used by Main
+    private static final double[] THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+    private static final int
+        WARMUP_FRAMES = 2000,
+        MEASURED_FRAMES = 5000,
+        SCENES = 64,
+        // Two pieces of the target and a bit of noise
+        CONTOURS = 3;
+
+    // Enough for the odd lazily initialized object somewhere in the JDK, but far under a single allocation per frame
+    private static final long MAX_BYTES = 4096;
+
+    // What the submat binding allocates for a search window that moved: the Mat and its finalizer
+    private static final long MAX_BYTES_PER_WINDOW = 256;
+
+    // What the findContours binding allocates for a contour: the Mat it comes in, the MatOfPoint it is copied to,
+    // and their share of the list and temporary Mats
+    private static final long MAX_BYTES_PER_CONTOUR = 256;
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void blobsAllocateNothingPerFrame() {
+        long allocated = measure(true, false, true);
+
+        assertTrue(allocated + " bytes allocated over " + MEASURED_FRAMES + " frames", allocated <= MAX_BYTES);
+    }
+
+    @Test
+    public void trackingAllocatesNothingPerFrameWhileLinedUp() {
+        long allocated = measure(true, true, false);
+
+        assertTrue(allocated + " bytes allocated over " + MEASURED_FRAMES + " frames", allocated <= MAX_BYTES);
+    }
+
+    @Test
+    public void trackingWithAThresholdEngineOnlyAllocatesTheMovingWindow() {
+        // The window changes size as well as place almost every frame, so the engine's buffers must not follow it
+        for (String engine : new String[] {"lookup", "java"}) {
+            long perFrame = measure(true, true, true, engine) / MEASURED_FRAMES;
+
+            assertTrue(engine + ": " + perFrame + " bytes allocated per frame", perFrame <= MAX_BYTES_PER_WINDOW);
+        }
+    }
+
+    @Test
+    public void contoursOnlyAllocateWhatTheBindingDoes() {
+        long
+            first = measure(false, false, true),
+            second = measure(false, false, true),
+            perFrame = first / MEASURED_FRAMES;
+
+        assertTrue(perFrame + " bytes allocated per frame", perFrame <= CONTOURS * MAX_BYTES_PER_CONTOUR);
+        assertTrue("allocation grew from " + first + " to " + second + " bytes", second <= first + MAX_BYTES);
+    }
+
+    private static long measure(boolean blobs, boolean tracking, boolean moving) {
+        return measure(blobs, tracking, moving, "opencv");
+    }
+
+    /**
+     * Warms up a pipeline, finder and trackers on the scenes, then runs them over more frames.
+     *
+     * @param blobs    whether to find blobs rather than contours
+     * @param tracking whether to only search around the target once it is found
+     * @param moving   whether the target moves across the frame, rather than staying put and flickering out
+     * @param engine   the name of the threshold engine, as found in the config
+     * @return the bytes allocated by this thread after warming up
+     */
+    private static long measure(boolean blobs, boolean tracking, boolean moving, String engine) {
+        Mat[] scenes = scenes(moving);
+        // The camera grabs every frame into the same Mat
+        Mat frame = new Mat();
+
+        MercPipeline pipeline = new MercPipeline(THRESHOLD, new FilterContourSettings());
+        pipeline.setBlobExtraction(blobs);
+        pipeline.setThresholdEngine(ThresholdEngine.forName(engine));
+
+        TrackingSettings trackingSettings = new TrackingSettings();
+        trackingSettings.enabled = tracking;
+        PredictionSettings prediction = new PredictionSettings();
+        prediction.enabled = true;
+
+        TargetFinder finder = new TargetFinder(PairingSettings.forTarget("gearVision"));
+        RoiTracker tracker = new RoiTracker(trackingSettings);
+        TargetTracker predictor = new TargetTracker(prediction);
+        TargetResult result = new TargetResult();
+
+        run(scenes, frame, pipeline, finder, tracker, predictor, result, 0, WARMUP_FRAMES);
+
+        long id = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(id);
+        run(scenes, frame, pipeline, finder, tracker, predictor, result, WARMUP_FRAMES, MEASURED_FRAMES);
+        long allocated = THREADS.getThreadAllocatedBytes(id) - before;
+
+        for (Mat scene : scenes)
+            scene.release();
+        frame.release();
+
+        return allocated;
+    }
+
+    private static void run(Mat[] scenes, Mat frame, MercPipeline pipeline, TargetFinder finder, RoiTracker tracker, TargetTracker predictor, TargetResult result, int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            scenes[i % scenes.length].copyTo(frame);
+
+            pipeline.process(frame);
+            finder.find(pipeline, result);
+            predictor.update(result, i * 66667L);
+            tracker.update(pipeline, result, frame.cols(), frame.rows());
+        }
+    }
+
+    /**
+     * Makes frames of the gear target, dropping out for a few frames every so often, along with a smaller bit of
+     * noise drifting along the bottom.
+     *
+     * @param moving whether the target drifts across the frame, or stays in one place
+     */
+    private static Mat[] scenes(boolean moving) {
+        Scalar green = new Scalar(0, 255, 0);
+        Mat[] frames = new Mat[SCENES];
+
+        for (int i = 0; i < SCENES; i++) {
+            Mat frame = Mat.zeros(240, 320, CvType.CV_8UC3);
+
+            if (i % 16 < 13) {
+                int
+                    x = moving ? 60 + i * 3 : 120,
+                    y = moving ? 80 + (i % 8) * 4 : 90;
+                Imgproc.rectangle(frame, new Point(x, y), new Point(x + 12, y + 30), green, -1);
+                Imgproc.rectangle(frame, new Point(x + 50, y), new Point(x + 62, y + 30), green, -1);
+            }
+
+            Imgproc.rectangle(frame, new Point(10 + i, 200), new Point(13 + i, 203), green, -1);
+            frames[i] = frame;
+        }
+
+        return frames;
+    }
+}
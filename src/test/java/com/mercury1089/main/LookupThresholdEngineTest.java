@@ -0,0 +1,131 @@
+package com.mercury1089.main;
+
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the mask of {@link LookupThresholdEngine} against {@code cvtColor} + {@code inRange}, over every BGR color
+ * and over random frames, for a spread of thresholds.
+ */
+public class LookupThresholdEngineTest {
+    // Hue min/max, saturation min/max and luminance min/max, like MercPipeline's threshold
+    private static final double[][] THRESHOLDS = {
+        {45, 70, 140, 255, 35, 255},
+        {0, 180, 0, 255, 0, 255},
+        {0, 0, 0, 0, 0, 0},
+        {0, 30, 50, 200, 20, 230},
+        {75, 95, 200, 255, 120, 180},
+        {170, 180, 0, 255, 0, 255},
+        {60, 60, 100, 100, 100, 100},
+        {90, 150, 1, 254, 1, 254}
+    };
+
+    private static final int RANDOM_FRAMES = 16;
+
+    // At the default bits each color is tested at the center of its bin, so colors in a bin that straddles a bound
+    // can come out either way. That is fewer than 2 in 100 colors for any of the thresholds.
+    private static final double MAX_DEFAULT_MISMATCH = 0.02;
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Test
+    public void matchesOpenCvForEveryColorAtEightBits() {
+        Mat frame = everyColor();
+
+        for (double[] threshold : THRESHOLDS)
+            assertEquals("mismatched pixels for " + describe(threshold), 0, mismatches(new LookupThresholdEngine(8), threshold, frame));
+
+        frame.release();
+    }
+
+    @Test
+    public void matchesOpenCvOnRandomFramesAtEightBits() {
+        Mat frame = new Mat(240, 320, CvType.CV_8UC3);
+        Core.setRNGSeed(1089);
+
+        for (int i = 0; i < RANDOM_FRAMES; i++) {
+            Core.randu(frame, 0, 256);
+
+            for (double[] threshold : THRESHOLDS)
+                assertEquals("mismatched pixels for " + describe(threshold), 0, mismatches(new LookupThresholdEngine(8), threshold, frame));
+        }
+
+        frame.release();
+    }
+
+    @Test
+    public void defaultBitsOnlyMismatchNearTheBounds() {
+        Mat frame = everyColor();
+
+        for (double[] threshold : THRESHOLDS) {
+            double mismatch = mismatches(new LookupThresholdEngine(), threshold, frame) / (double)frame.total();
+            assertTrue(mismatch + " of colors mismatched for " + describe(threshold), mismatch <= MAX_DEFAULT_MISMATCH);
+        }
+
+        frame.release();
+    }
+
+    /**
+     * Makes a frame with every 8-bit BGR color in it once, one row per blue value.
+     */
+    private static Mat everyColor() {
+        byte[] pixels = new byte[256 * 256 * 256 * 3];
+
+        for (int b = 0, p = 0; b < 256; b++) {
+            for (int g = 0; g < 256; g++) {
+                for (int r = 0; r < 256; r++, p += 3) {
+                    pixels[p] = (byte)b;
+                    pixels[p + 1] = (byte)g;
+                    pixels[p + 2] = (byte)r;
+                }
+            }
+        }
+
+        Mat frame = new Mat(256, 256 * 256, CvType.CV_8UC3);
+        frame.put(0, 0, pixels);
+        return frame;
+    }
+
+    /**
+     * Counts the pixels where the engine's mask differs from OpenCV's.
+     */
+    private static int mismatches(ThresholdEngine engine, double[] threshold, Mat frame) {
+        Mat hls = new Mat(), expected = new Mat(), actual = new Mat();
+
+        Imgproc.cvtColor(frame, hls, Imgproc.COLOR_BGR2HLS);
+        Core.inRange(hls,
+            new Scalar(threshold[0], threshold[4], threshold[2]),
+            new Scalar(threshold[1], threshold[5], threshold[3]),
+            expected);
+
+        engine.setBounds(
+            new double[] {threshold[0], threshold[1]},
+            new double[] {threshold[2], threshold[3]},
+            new double[] {threshold[4], threshold[5]});
+        engine.threshold(frame, actual);
+
+        Core.compare(expected, actual, actual, Core.CMP_NE);
+        int count = Core.countNonZero(actual);
+
+        hls.release();
+        expected.release();
+        actual.release();
+
+        return count;
+    }
+
+    private static String describe(double[] threshold) {
+        return Arrays.toString(threshold);
+    }
+}
@@ -0,0 +1,193 @@
+package com.mercury1089.main;
+
+import com.mercury1089.vision.Yuyv;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the mask of {@link YuyvThresholdEngine} on frames made with {@link Yuyv#fromBgr}.
+ *
+ * <p>Against the frame the camera would have sent, converted to BGR the way OpenCV does and thresholded with
+ * {@code cvtColor} + {@code inRange}, the mask matches exactly at 8 bits. Against the BGR frame it was made from,
+ * it can only differ where the two pixels of a pair have different colors, since they share their chroma: at most
+ * one pixel on each side of a vertical edge that splits a pair.
+ */
+public class YuyvThresholdEngineTest {
+    // Same as the default threshold used by Main, in MercPipeline's order of hue, saturation and luminance
+    private static final double[] THRESHOLD = {45, 70, 140, 255, 35, 255};
+
+    private static final double[][] THRESHOLDS = {
+        THRESHOLD,
+        {0, 180, 0, 255, 0, 255},
+        {0, 30, 50, 200, 20, 230},
+        {75, 95, 200, 255, 120, 180},
+        {90, 150, 1, 254, 1, 254}
+    };
+
+    // Colors well inside or outside THRESHOLD, so their pixels come out the same in YUYV unless they share a pair
+    private static final Scalar[] COLORS = {
+        new Scalar(0, 255, 0),
+        new Scalar(40, 220, 60),
+        new Scalar(30, 30, 30),
+        new Scalar(250, 250, 250),
+        new Scalar(200, 100, 50),
+        new Scalar(20, 60, 220)
+    };
+
+    private static final int
+        RANDOM_FRAMES = 16,
+        SCENES = 64,
+        RECTS_PER_SCENE = 12;
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Test
+    public void matchesOpenCvOnTheYuyvFrameAtEightBits() {
+        Mat frame = new Mat(240, 320, CvType.CV_8UC3), yuyv = new Mat();
+        Core.setRNGSeed(1089);
+
+        for (int i = 0; i < RANDOM_FRAMES; i++) {
+            Core.randu(frame, 0, 256);
+            Yuyv.fromBgr(frame, yuyv);
+
+            for (double[] threshold : THRESHOLDS)
+                assertEquals("mismatched pixels in frame " + i + " for " + Arrays.toString(threshold), 0, countMismatches(new YuyvThresholdEngine(8), threshold, yuyv));
+        }
+
+        frame.release();
+        yuyv.release();
+    }
+
+    @Test
+    public void searchWindowsMatchTheWholeFrame() {
+        Mat frame = new Mat(240, 320, CvType.CV_8UC3), yuyv = new Mat(), whole = new Mat(), part = new Mat();
+        Core.setRNGSeed(1089);
+        Core.randu(frame, 0, 256);
+        Yuyv.fromBgr(frame, yuyv);
+
+        YuyvThresholdEngine engine = new YuyvThresholdEngine();
+        setBounds(engine, THRESHOLD);
+        engine.threshold(yuyv, whole);
+
+        // Windows that start and end on either pixel of a pair
+        for (int left = 10; left < 12; left++) {
+            for (int right = 200; right < 202; right++) {
+                Mat window = yuyv.submat(30, 150, left, right), expected = whole.submat(30, 150, left, right);
+                engine.threshold(window, part);
+
+                Core.compare(expected, part, part, Core.CMP_NE);
+                assertEquals("mismatched pixels from column " + left + " to " + right, 0, Core.countNonZero(part));
+
+                window.release();
+                expected.release();
+            }
+        }
+
+        frame.release();
+        yuyv.release();
+        whole.release();
+        part.release();
+    }
+
+    @Test
+    public void onlyMismatchesTheBgrFrameWherePairsSplit() {
+        Random random = new Random(1089);
+        Mat
+            frame = new Mat(240, 320, CvType.CV_8UC3),
+            yuyv = new Mat(),
+            hls = new Mat(),
+            expected = new Mat(),
+            actual = new Mat();
+        byte[]
+            pixels = new byte[240 * 320 * 3],
+            expectedMask = new byte[240 * 320],
+            actualMask = new byte[240 * 320];
+
+        YuyvThresholdEngine engine = new YuyvThresholdEngine();
+        setBounds(engine, THRESHOLD);
+
+        for (int scene = 0; scene < SCENES; scene++) {
+            frame.setTo(COLORS[random.nextInt(COLORS.length)]);
+
+            for (int i = 0; i < RECTS_PER_SCENE; i++) {
+                int x = random.nextInt(300), y = random.nextInt(220);
+                Imgproc.rectangle(frame, new Point(x, y), new Point(x + 1 + random.nextInt(60), y + 1 + random.nextInt(60)), COLORS[random.nextInt(COLORS.length)], -1);
+            }
+
+            Imgproc.cvtColor(frame, hls, Imgproc.COLOR_BGR2HLS);
+            Core.inRange(hls, new Scalar(THRESHOLD[0], THRESHOLD[4], THRESHOLD[2]), new Scalar(THRESHOLD[1], THRESHOLD[5], THRESHOLD[3]), expected);
+            Yuyv.fromBgr(frame, yuyv);
+            engine.threshold(yuyv, actual);
+
+            frame.get(0, 0, pixels);
+            expected.get(0, 0, expectedMask);
+            actual.get(0, 0, actualMask);
+
+            for (int i = 0; i < actualMask.length; i++) {
+                if (actualMask[i] == expectedMask[i])
+                    continue;
+
+                // The other pixel of the pair has to have a different color
+                int other = (i & 1) == 0 ? i + 1 : i - 1;
+                boolean split =
+                    pixels[i * 3] != pixels[other * 3] ||
+                    pixels[i * 3 + 1] != pixels[other * 3 + 1] ||
+                    pixels[i * 3 + 2] != pixels[other * 3 + 2];
+                assertTrue("pixel " + (i % 320) + ", " + (i / 320) + " of scene " + scene + " mismatched within a solid pair", split);
+            }
+        }
+
+        frame.release();
+        yuyv.release();
+        hls.release();
+        expected.release();
+        actual.release();
+    }
+
+    /**
+     * Counts the pixels where the engine's mask of a YUYV frame differs from OpenCV's mask of the frame in BGR.
+     */
+    private static int countMismatches(ThresholdEngine engine, double[] threshold, Mat yuyv) {
+        Mat bgr = new Mat(), hls = new Mat(), expected = new Mat(), actual = new Mat();
+
+        Yuyv.toBgr(yuyv, bgr);
+        Imgproc.cvtColor(bgr, hls, Imgproc.COLOR_BGR2HLS);
+        Core.inRange(hls,
+            new Scalar(threshold[0], threshold[4], threshold[2]),
+            new Scalar(threshold[1], threshold[5], threshold[3]),
+            expected);
+
+        setBounds(engine, threshold);
+        engine.threshold(yuyv, actual);
+
+        Core.compare(expected, actual, actual, Core.CMP_NE);
+        int count = Core.countNonZero(actual);
+
+        bgr.release();
+        hls.release();
+        expected.release();
+        actual.release();
+
+        return count;
+    }
+
+    private static void setBounds(ThresholdEngine engine, double[] threshold) {
+        engine.setBounds(
+            new double[] {threshold[0], threshold[1]},
+            new double[] {threshold[2], threshold[3]},
+            new double[] {threshold[4], threshold[5]});
+    }
+}